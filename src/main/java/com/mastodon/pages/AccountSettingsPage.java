@@ -1,9 +1,12 @@
 package com.mastodon.pages;
 
+import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
 
+import com.mastodon.utils.FormFill;
+
 /**
  * Page object for the account settings page
  */
@@ -13,13 +16,19 @@ public class AccountSettingsPage extends SettingsPage {
     @FindBy(xpath = "//input[contains(@id, 'email') or contains(@name, 'email')]")
     private WebElement emailInput;
 
-    @FindBy(xpath = "//input[contains(@id, 'password') or contains(@name, 'password')]")
+    private static final String PASSWORD_XPATH = "//input[contains(@id, 'password') or contains(@name, 'password')]";
+
+    @FindBy(xpath = PASSWORD_XPATH)
     private WebElement passwordInput;
 
-    @FindBy(xpath = "//input[contains(@id, 'password_confirmation') or contains(@name, 'password_confirmation')]")
+    private static final String PASSWORD_CONFIRMATION_XPATH = "//input[contains(@id, 'password_confirmation') or contains(@name, 'password_confirmation')]";
+
+    @FindBy(xpath = PASSWORD_CONFIRMATION_XPATH)
     private WebElement passwordConfirmationInput;
 
-    @FindBy(xpath = "//input[contains(@id, 'current_password') or contains(@name, 'current_password')]")
+    private static final String CURRENT_PASSWORD_XPATH = "//input[contains(@id, 'current_password') or contains(@name, 'current_password')]";
+
+    @FindBy(xpath = CURRENT_PASSWORD_XPATH)
     private WebElement currentPasswordInput;
 
     @FindBy(xpath = "//button[contains(text(), 'Delete account') or contains(@class, 'delete-account')]")
@@ -105,9 +114,10 @@ public class AccountSettingsPage extends SettingsPage {
      * @return AccountSettingsPage instance for method chaining
      */
     public AccountSettingsPage changePassword(String newPassword, String currentPassword) {
-        enterPassword(newPassword);
-        enterPasswordConfirmation(newPassword);
-        enterCurrentPassword(currentPassword);
+        fillForm(new FormFill()
+                .set(By.xpath(PASSWORD_XPATH), newPassword)
+                .set(By.xpath(PASSWORD_CONFIRMATION_XPATH), newPassword)
+                .set(By.xpath(CURRENT_PASSWORD_XPATH), currentPassword));
         return saveAccountSettings();
     }
 }
\ No newline at end of file
@@ -1,14 +1,21 @@
 package com.mastodon.pages;
 
+import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
 
+import com.mastodon.utils.FormFill;
+
 /**
  * Page object for the appearance settings page
  */
 public class AppearanceSettingsPage extends SettingsPage {
 
+    // Radio groups, for setting a value of the group in a form fill
+    private static final String THEME_RADIOS_XPATH = "//input[contains(@id, 'setting_theme')]";
+    private static final String MEDIA_RADIOS_XPATH = "//input[contains(@id, 'setting_display_media')]";
+
     // Page elements using XPath locators
     @FindBy(xpath = "//input[contains(@id, 'setting_theme') and @value='light']")
     private WebElement lightThemeRadio;
@@ -19,7 +26,9 @@ public class AppearanceSettingsPage extends SettingsPage {
     @FindBy(xpath = "//input[contains(@id, 'setting_theme') and @value='auto']")
     private WebElement autoThemeRadio;
 
-    @FindBy(xpath = "//select[contains(@id, 'setting_locale') or contains(@name, 'locale')]")
+    private static final String LANGUAGE_SELECT_XPATH = "//select[contains(@id, 'setting_locale') or contains(@name, 'locale')]";
+
+    @FindBy(xpath = LANGUAGE_SELECT_XPATH)
     private WebElement languageSelect;
 
     @FindBy(xpath = "//input[contains(@id, 'setting_display_media') and @value='default']")
@@ -99,6 +108,22 @@ public class AppearanceSettingsPage extends SettingsPage {
         return this;
     }
 
+    /**
+     * Apply appearance settings in one step
+     * 
+     * @param theme        Theme: light, dark or auto; null to keep it
+     * @param language     Language, by visible text or locale code; null to keep it
+     * @param mediaDisplay Media display: default or hide_all; null to keep it
+     * @return AppearanceSettingsPage instance for method chaining
+     */
+    public AppearanceSettingsPage applyAppearance(String theme, String language, String mediaDisplay) {
+        fillForm(new FormFill()
+                .set(By.xpath(THEME_RADIOS_XPATH), theme)
+                .set(By.xpath(LANGUAGE_SELECT_XPATH), language)
+                .set(By.xpath(MEDIA_RADIOS_XPATH), mediaDisplay));
+        return this;
+    }
+
     /**
      * Save appearance settings
      * 
@@ -10,6 +10,10 @@ import org.openqa.selenium.support.PageFactory;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
 
+import com.mastodon.utils.DomQuery;
+import com.mastodon.utils.FormFill;
+import com.mastodon.utils.TextEntry;
+
 /**
  * Base page class that contains common methods for all page objects
  */
@@ -40,15 +44,38 @@ public class BasePage {
 
     /**
      * Wait for element to be visible and enter text
+     * The text is inserted in one step (see TextEntry), so long texts take as
+     * long as short ones; use typeKeys where the typing itself is under test
      * 
      * @param element WebElement to enter text into
      * @param text    Text to enter
      */
     protected void sendKeys(WebElement element, String text) {
+        wait.until(ExpectedConditions.visibilityOf(element)).clear();
+        TextEntry.enter(driver, element, text);
+    }
+
+    /**
+     * Wait for element to be visible and type text one key at a time
+     * 
+     * @param element WebElement to type into
+     * @param text    Text to type
+     */
+    protected void typeKeys(WebElement element, String text) {
         wait.until(ExpectedConditions.visibilityOf(element)).clear();
         element.sendKeys(text);
     }
 
+    /**
+     * Set all fields of a form in one script and verify them in one read
+     * 
+     * @param form Field locators and values
+     * @throws IllegalStateException if a field is missing or does not hold its value
+     */
+    protected void fillForm(FormFill form) {
+        form.apply(driver, Duration.ofSeconds(10));
+    }
+
     /**
      * Wait for element to be visible
      * 
@@ -83,6 +110,36 @@ public class BasePage {
         }
     }
 
+    /**
+     * Check if element is displayed without waiting
+     * Unlike a lookup through a WebElement field, the check never blocks on the
+     * implicit wait, so it is as fast when the element is absent as when it is there
+     * 
+     * @param locator By locator of the element
+     * @return true if element is displayed, false otherwise
+     */
+    protected boolean isElementDisplayed(By locator) {
+        try {
+            return DomQuery.isDisplayed(driver, locator);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Check if element is in the page without waiting
+     * 
+     * @param locator By locator of the element
+     * @return true if element is present, false otherwise
+     */
+    protected boolean isElementPresent(By locator) {
+        try {
+            return DomQuery.isPresent(driver, locator);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
     /**
      * Scroll to element using JavaScript
      * 
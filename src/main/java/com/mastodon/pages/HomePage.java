@@ -5,18 +5,63 @@ import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
 import com.mastodon.utils.ExceptionHandlingUtils;
+import com.mastodon.utils.TextEntry;
+import com.mastodon.utils.UniqueContentGenerator;
 import org.openqa.selenium.ElementNotInteractableException;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.TimeoutException;
 import java.time.Duration;
-import java.util.List;
 
 /**
  * Page object for the home page
  */
 public class HomePage extends BasePage {
 
+    /**
+     * Finds a post in one round trip. On first use in a page, the script indexes the
+     * tokens of every status content by their element, and a MutationObserver then
+     * indexes statuses as the timeline adds them, so a token lookup does not scan
+     * the timeline. Texts without a token are matched against the status texts,
+     * passed as a script argument rather than built into a locator. Returns the
+     * status id (empty if the status has none) or null if no visible post matches
+     */
+    private static final String FIND_POST_SCRIPT =
+            "var tokenRegex = arguments[0], token = arguments[1], text = arguments[2];"
+            + "var index = window.__mastodonPostIndex;"
+            + "if (!index || index.tokenRegex !== tokenRegex) {"
+            + "  index = window.__mastodonPostIndex = { tokenRegex: tokenRegex, posts: {} };"
+            + "  var add = function (node) {"
+            + "    var element = node.nodeType === 1 ? node : node.parentElement;"
+            + "    if (!element) { return; }"
+            + "    var owner = element.closest('.status__content');"
+            + "    var contents = owner ? [owner] : element.querySelectorAll('.status__content');"
+            + "    for (var i = 0; i < contents.length; i++) {"
+            + "      var tokens = contents[i].textContent.match(new RegExp(tokenRegex, 'g')) || [];"
+            + "      for (var j = 0; j < tokens.length; j++) { index.posts[tokens[j]] = contents[i]; }"
+            + "    }"
+            + "  };"
+            + "  add(document.body);"
+            + "  new MutationObserver(function (mutations) {"
+            + "    for (var i = 0; i < mutations.length; i++) {"
+            + "      for (var j = 0; j < mutations[i].addedNodes.length; j++) { add(mutations[i].addedNodes[j]); }"
+            + "    }"
+            + "  }).observe(document.body, { childList: true, subtree: true });"
+            + "}"
+            + "var content = null;"
+            + "if (token) {"
+            + "  content = index.posts[token] || null;"
+            + "} else {"
+            + "  var contents = document.querySelectorAll('.status__content');"
+            + "  for (var i = 0; i < contents.length && !content; i++) {"
+            + "    if (contents[i].textContent.indexOf(text) >= 0) { content = contents[i]; }"
+            + "  }"
+            + "}"
+            + "if (!content || !content.isConnected || content.getClientRects().length === 0) { return null; }"
+            + "var status = content.closest('[data-id]');"
+            + "return status ? status.getAttribute('data-id') : '';";
+
     // Page elements using XPath locators
     @FindBy(xpath = "//div[contains(@class, 'navigation-panel')]//a[contains(@href, '/home')]")
     private WebElement homeNavLink;
@@ -42,7 +87,9 @@ public class HomePage extends BasePage {
     @FindBy(xpath = "//div[contains(@class, 'account-gallery')]//a[contains(@href, '/settings')]")
     private WebElement settingsLink;
 
-    @FindBy(xpath = "//div[contains(@class, 'account')]//div[contains(@class, 'display-name')]")
+    private static final String USER_DISPLAY_NAME_XPATH = "//div[contains(@class, 'account')]//div[contains(@class, 'display-name')]";
+
+    @FindBy(xpath = USER_DISPLAY_NAME_XPATH)
     private WebElement userDisplayName;
 
     /**
@@ -60,7 +107,7 @@ public class HomePage extends BasePage {
      * @return true if user is logged in, false otherwise
      */
     public boolean isUserLoggedIn() {
-        return isElementDisplayed(userDisplayName);
+        return isElementDisplayed(By.xpath(USER_DISPLAY_NAME_XPATH));
     }
 
     /**
@@ -144,6 +191,19 @@ public class HomePage extends BasePage {
         return clickPostButton();
     }
 
+    /**
+     * Create a post that no other worker or run can have created, so it can be
+     * looked up without matching stale posts
+     * 
+     * @param text Readable text for the post
+     * @return Posted text; the unique token in it is enough to find the post with isPostDisplayed
+     */
+    public String createUniquePost(String text) {
+        String postText = UniqueContentGenerator.uniqueText(text);
+        createPost(postText);
+        return postText;
+    }
+
     /**
      * Upload media to a post
      * 
@@ -168,19 +228,31 @@ public class HomePage extends BasePage {
     /**
      * Check if post with specific text exists
      * 
-     * @param postText Text to search for in posts
+     * @param postText Text to search for in posts; texts from createUniquePost are found by their token
      * @return true if post exists, false otherwise
      */
     public boolean isPostDisplayed(String postText) {
         try {
-            WebElement post = driver.findElement(
-                    By.xpath("//div[contains(@class, 'status-content') and contains(text(), '" + postText + "')]"));
-            return post.isDisplayed();
+            return findPostStatusId(postText) != null;
         } catch (Exception e) {
             return false;
         }
     }
 
+    /**
+     * Get the status id of a visible post
+     * A text carrying a token of this run is looked up in an index kept in the
+     * page, which costs the same however long the timeline is; other texts
+     * are matched against each status once, in the page
+     * 
+     * @param postText Post text, or just its unique token
+     * @return Status id, empty if the status element has none, or null if no visible post matches
+     */
+    public String findPostStatusId(String postText) {
+        return (String) ((JavascriptExecutor) driver).executeScript(FIND_POST_SCRIPT,
+                UniqueContentGenerator.getTokenRegex(), UniqueContentGenerator.findToken(postText), postText);
+    }
+
     /**
      * Check if home page is loaded
      * 
@@ -232,7 +304,7 @@ public class HomePage extends BasePage {
             ExceptionHandlingUtils.executeWithRetry(
                     () -> {
                         postTextArea.clear();
-                        postTextArea.sendKeys(text);
+                        TextEntry.enter(driver, postTextArea, text);
                         return true;
                     },
                     3,
@@ -304,15 +376,7 @@ public class HomePage extends BasePage {
 
             // Look for post containing the text
             return ExceptionHandlingUtils.executeWithRetry(
-                    () -> {
-                        List<WebElement> posts = driver.findElements(By.cssSelector(".status__content"));
-                        for (WebElement post : posts) {
-                            if (post.getText().contains(text)) {
-                                return true;
-                            }
-                        }
-                        return false;
-                    },
+                    () -> findPostStatusId(text) != null,
                     3,
                     Duration.ofSeconds(1),
                     StaleElementReferenceException.class);
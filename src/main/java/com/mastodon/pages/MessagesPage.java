@@ -1,5 +1,6 @@
 package com.mastodon.pages;
 
+import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
@@ -16,7 +17,9 @@ public class MessagesPage extends BasePage {
     @FindBy(xpath = "//button[contains(@aria-label, 'New message') or contains(@class, 'compose')]")
     private WebElement newMessageButton;
 
-    @FindBy(xpath = "//div[contains(@class, 'compose-form')]//textarea")
+    private static final String MESSAGE_TEXT_AREA_XPATH = "//div[contains(@class, 'compose-form')]//textarea";
+
+    @FindBy(xpath = MESSAGE_TEXT_AREA_XPATH)
     private WebElement messageTextArea;
 
     @FindBy(xpath = "//div[contains(@class, 'compose-form')]//button[contains(text(), 'Send') or contains(@class, 'send')]")
@@ -101,6 +104,6 @@ public class MessagesPage extends BasePage {
      * @return true if compose form is displayed, false otherwise
      */
     public boolean isComposeFormDisplayed() {
-        return isElementDisplayed(messageTextArea);
+        return isElementDisplayed(By.xpath(MESSAGE_TEXT_AREA_XPATH));
     }
 }
\ No newline at end of file
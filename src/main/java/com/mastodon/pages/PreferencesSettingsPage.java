@@ -1,14 +1,21 @@
 package com.mastodon.pages;
 
+import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
 
+import com.mastodon.utils.FormFill;
+
 /**
  * Page object for the preferences settings page
  */
 public class PreferencesSettingsPage extends SettingsPage {
 
+    // Radio groups, for setting a value of the group in a form fill
+    private static final String PRIVACY_RADIOS_XPATH = "//input[contains(@id, 'setting_default_privacy')]";
+    private static final String CONTENT_TYPE_RADIOS_XPATH = "//input[contains(@id, 'setting_default_content_type')]";
+
     // Page elements using XPath locators
     @FindBy(xpath = "//input[contains(@id, 'setting_default_privacy') and @value='public']")
     private WebElement publicPostsRadio;
@@ -84,6 +91,20 @@ public class PreferencesSettingsPage extends SettingsPage {
         return this;
     }
 
+    /**
+     * Apply posting preferences in one step
+     * 
+     * @param privacy     Default post privacy: public, unlisted or private; null to keep it
+     * @param contentType Default format: text/plain or text/markdown; null to keep it
+     * @return PreferencesSettingsPage instance for method chaining
+     */
+    public PreferencesSettingsPage applyPreferences(String privacy, String contentType) {
+        fillForm(new FormFill()
+                .set(By.xpath(PRIVACY_RADIOS_XPATH), privacy)
+                .set(By.xpath(CONTENT_TYPE_RADIOS_XPATH), contentType));
+        return this;
+    }
+
     /**
      * Save preferences settings
      * 
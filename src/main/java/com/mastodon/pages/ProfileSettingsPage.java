@@ -1,19 +1,26 @@
 package com.mastodon.pages;
 
+import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
 
+import com.mastodon.utils.FormFill;
+
 /**
  * Page object for the profile settings page
  */
 public class ProfileSettingsPage extends SettingsPage {
 
     // Page elements using XPath locators
-    @FindBy(xpath = "//input[@id='display_name' or contains(@name, 'display_name')]")
+    private static final String DISPLAY_NAME_XPATH = "//input[@id='display_name' or contains(@name, 'display_name')]";
+
+    @FindBy(xpath = DISPLAY_NAME_XPATH)
     private WebElement displayNameInput;
 
-    @FindBy(xpath = "//textarea[@id='note' or contains(@name, 'bio') or contains(@name, 'note')]")
+    private static final String BIO_XPATH = "//textarea[@id='note' or contains(@name, 'bio') or contains(@name, 'note')]";
+
+    @FindBy(xpath = BIO_XPATH)
     private WebElement bioTextArea;
 
     @FindBy(xpath = "//input[contains(@id, 'avatar') or contains(@name, 'avatar')]")
@@ -53,6 +60,20 @@ public class ProfileSettingsPage extends SettingsPage {
         return this;
     }
 
+    /**
+     * Update the profile text fields in one step
+     * 
+     * @param displayName Display name, or null to keep it
+     * @param bio         Bio, or null to keep it
+     * @return ProfileSettingsPage instance for method chaining
+     */
+    public ProfileSettingsPage updateProfile(String displayName, String bio) {
+        fillForm(new FormFill()
+                .set(By.xpath(DISPLAY_NAME_XPATH), displayName)
+                .set(By.xpath(BIO_XPATH), bio));
+        return this;
+    }
+
     /**
      * Upload avatar
      * 
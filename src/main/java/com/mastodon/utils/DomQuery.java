@@ -0,0 +1,136 @@
+package com.mastodon.utils;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Presence and visibility checks that answer immediately
+ * A check is one script that looks the locator up in the page and returns
+ * whether the first match exists and is displayed. findElement is never
+ * called, so the implicit wait of the driver, whatever it is set to, cannot
+ * turn a negative check into a wait. Locators that have no DOM equivalent
+ * (e.g. relative or chained locators) fall back to findElements with the
+ * implicit wait set to zero for the call
+ */
+public class DomQuery {
+
+    private static final long ABSENT = 0;
+    private static final long PRESENT = 1;
+    private static final long DISPLAYED = 2;
+
+    /**
+     * Script function resolving a locator split by split() to its first element, or null
+     */
+    static final String LOCATE_FUNCTION =
+            "function locate(how, what) {"
+            + "  if (how === 'cssSelector') { return document.querySelector(what); }"
+            + "  if (how === 'xpath') {"
+            + "    return document.evaluate(what, document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null)"
+            + "        .singleNodeValue;"
+            + "  }"
+            + "  if (how === 'id') { return document.getElementById(what); }"
+            + "  if (how === 'name') { return document.getElementsByName(what)[0] || null; }"
+            + "  if (how === 'className') { return document.getElementsByClassName(what)[0] || null; }"
+            + "  if (how === 'tagName') { return document.getElementsByTagName(what)[0] || null; }"
+            + "  var links = document.getElementsByTagName('a');"
+            + "  for (var i = 0; i < links.length; i++) {"
+            + "    var text = links[i].textContent.trim();"
+            + "    if (how === 'linkText' ? text === what : text.indexOf(what) >= 0) { return links[i]; }"
+            + "  }"
+            + "  return null;"
+            + "}";
+
+    private static final String QUERY_SCRIPT = LOCATE_FUNCTION
+            + "var element = locate(arguments[0], arguments[1]);"
+            + "if (!element) { return 0; }"
+            + "var style = window.getComputedStyle(element);"
+            + "return element.getClientRects().length > 0 && style.visibility !== 'hidden' ? 2 : 1;";
+
+    /**
+     * Check if an element matching the locator is in the page
+     *
+     * @param driver  WebDriver instance
+     * @param locator By locator
+     * @return true if an element matches, false otherwise
+     */
+    public static boolean isPresent(WebDriver driver, By locator) {
+        return query(driver, locator) != ABSENT;
+    }
+
+    /**
+     * Check if the first element matching the locator is displayed
+     *
+     * @param driver  WebDriver instance
+     * @param locator By locator
+     * @return true if it exists and is displayed, false otherwise
+     */
+    public static boolean isDisplayed(WebDriver driver, By locator) {
+        return query(driver, locator) == DISPLAYED;
+    }
+
+    /**
+     * Check if no element matches the locator
+     *
+     * @param driver  WebDriver instance
+     * @param locator By locator
+     * @return true if no element matches, false otherwise
+     */
+    public static boolean isAbsent(WebDriver driver, By locator) {
+        return query(driver, locator) == ABSENT;
+    }
+
+    private static long query(WebDriver driver, By locator) {
+        String[] howAndWhat = split(locator);
+        if (howAndWhat == null) {
+            return findWithoutImplicitWait(driver, locator);
+        }
+        Object result = ((JavascriptExecutor) driver).executeScript(QUERY_SCRIPT, howAndWhat[0], howAndWhat[1]);
+        return ((Number) result).longValue();
+    }
+
+    /**
+     * Split a standard locator into the strategy and the value LOCATE_FUNCTION takes
+     *
+     * @param locator By locator
+     * @return Strategy and value, or null for locators the page cannot resolve by itself
+     */
+    static String[] split(By locator) {
+        // By.toString() is "By.<how>: <what>" for the standard locators
+        String description = locator.toString();
+        int separator = description.indexOf(": ");
+        String how = separator > 3 && description.startsWith("By.") ? description.substring(3, separator) : "";
+        switch (how) {
+            case "cssSelector":
+            case "xpath":
+            case "id":
+            case "name":
+            case "className":
+            case "tagName":
+            case "linkText":
+            case "partialLinkText":
+                return new String[] { how, description.substring(separator + 2) };
+            default:
+                return null;
+        }
+    }
+
+    private static long findWithoutImplicitWait(WebDriver driver, By locator) {
+        WebDriver.Timeouts timeouts = driver.manage().timeouts();
+        Duration implicitWait = timeouts.getImplicitWaitTimeout();
+        timeouts.implicitlyWait(Duration.ZERO);
+        try {
+            List<WebElement> elements = driver.findElements(locator);
+            if (elements.isEmpty()) {
+                return ABSENT;
+            }
+            return elements.get(0).isDisplayed() ? DISPLAYED : PRESENT;
+        } finally {
+            timeouts.implicitlyWait(implicitWait);
+        }
+    }
+}
@@ -100,12 +100,12 @@ public class ExceptionHandlingUtils {
                 Path destination = Paths.get(SCREENSHOTS_DIR,
                         screenshotName + "_" + timestamp + ".png");
                 Files.copy(screenshot.toPath(), destination);
-                System.out.println("Screenshot saved to: " + destination);
+                TestLog.info("Screenshot saved to: " + destination);
                 return destination;
             } catch (IOException e) {
-                System.out.println("Failed to save screenshot: " + e.getMessage());
+                TestLog.warn("Failed to save screenshot: " + e.getMessage());
             } catch (WebDriverException e) {
-                System.out.println("Failed to take screenshot: " + e.getMessage());
+                TestLog.warn("Failed to take screenshot: " + e.getMessage());
             }
         }
         return null;
@@ -119,24 +119,23 @@ public class ExceptionHandlingUtils {
      * @param context Additional context information
      */
     public static void logException(WebDriver driver, Exception e, String context) {
-        System.out.println("\n==== Exception Details ====");
-        System.out.println("Context: " + context);
-        System.out.println("Exception Type: " + e.getClass().getSimpleName());
-        System.out.println("Message: " + e.getMessage());
-        System.out.println("Timestamp: " + LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        StringBuilder details = new StringBuilder("==== Exception Details ====");
+        details.append("\nContext: ").append(context);
+        details.append("\nException Type: ").append(e.getClass().getSimpleName());
+        details.append("\nMessage: ").append(e.getMessage());
+        details.append("\nTimestamp: ").append(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
 
         if (driver != null) {
             try {
-                System.out.println("Current URL: " + driver.getCurrentUrl());
-                System.out.println("Page Title: " + driver.getTitle());
+                details.append("\nCurrent URL: ").append(driver.getCurrentUrl());
+                details.append("\nPage Title: ").append(driver.getTitle());
             } catch (Exception ex) {
-                System.out.println("Could not get current URL or title: " + ex.getMessage());
+                details.append("\nCould not get current URL or title: ").append(ex.getMessage());
             }
         }
 
-        System.out.println("\nStack Trace:");
-        e.printStackTrace();
-        System.out.println("\n==== End of Exception Details ====");
+        // Buffered with the test's other log lines; only written out if the test fails
+        TestLog.error(details.toString(), e);
     }
 
     /**
@@ -172,7 +171,7 @@ public class ExceptionHandlingUtils {
             } catch (NoSuchElementException | StaleElementReferenceException e) {
                 lastException = e;
                 retries++;
-                System.out.println("Retry " + retries + " of " + maxRetries + ": " + e.getMessage());
+                TestLog.warn("Retry " + retries + " of " + maxRetries + ": " + e.getMessage());
 
                 if (retries < maxRetries) {
                     try {
@@ -220,24 +219,24 @@ public class ExceptionHandlingUtils {
             try {
                 WebElement element = driver.findElement(locator);
                 element.click();
-                System.out.println("Successfully clicked element: " + locator);
+                TestLog.info("Successfully clicked element: " + locator);
                 return;
             } catch (NoSuchElementException | StaleElementReferenceException e) {
                 lastException = e;
                 retries++;
-                System.out.println("Retry " + retries + " of " + maxRetries + ": " + e.getMessage());
+                TestLog.warn("Retry " + retries + " of " + maxRetries + ": " + e.getMessage());
             } catch (ElementNotInteractableException e) {
                 // Try JavaScript click as fallback
                 try {
-                    System.out.println("Attempting JavaScript click after exception: " + e.getMessage());
+                    TestLog.warn("Attempting JavaScript click after exception: " + e.getMessage());
                     WebElement element = driver.findElement(locator);
                     ((JavascriptExecutor) driver).executeScript("arguments[0].click();", element);
-                    System.out.println("Successfully clicked element using JavaScript: " + locator);
+                    TestLog.info("Successfully clicked element using JavaScript: " + locator);
                     return;
                 } catch (Exception jsException) {
                     lastException = jsException;
                     retries++;
-                    System.out.println("JavaScript click retry " + retries + " of " + maxRetries + ": "
+                    TestLog.warn("JavaScript click retry " + retries + " of " + maxRetries + ": "
                             + jsException.getMessage());
                 }
             }
@@ -366,7 +365,7 @@ public class ExceptionHandlingUtils {
 
                 lastException = e;
                 retries++;
-                System.out.println("Retry " + retries + " of " + maxRetries + ": " + e.getMessage());
+                TestLog.warn("Retry " + retries + " of " + maxRetries + ": " + e.getMessage());
 
                 if (retries < maxRetries) {
                     try {
@@ -397,9 +396,40 @@ public class ExceptionHandlingUtils {
         return executeWithRetry(operation, DEFAULT_MAX_RETRIES, DEFAULT_RETRY_INTERVAL, exceptionTypes);
     }
 
+    /**
+     * Check whether a failure came from the browser or the site rather than
+     * from the behaviour under test, so running the test again may pass
+     * Timeouts, stale elements, other WebDriver errors and the custom
+     * exceptions of this class qualify; assertion failures never do, even
+     * when they wrap one of those
+     *
+     * @param throwable Failure to classify, may be null
+     * @return true if the failure is worth retrying
+     */
+    public static boolean isRetryable(Throwable throwable) {
+        boolean infrastructure = false;
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof AssertionError) {
+                return false;
+            }
+            if (cause instanceof TimeoutException
+                    || cause instanceof StaleElementReferenceException
+                    || cause instanceof WebDriverException
+                    || cause instanceof ElementNotFoundException
+                    || cause instanceof ElementNotInteractableAfterWaitException
+                    || cause instanceof PageLoadTimeoutException) {
+                infrastructure = true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return infrastructure;
+    }
+
     /**
      * Execute an operation with fallback value if it fails
-     * 
+     *
      * @param <T>           Return type of the operation
      * @param operation     Operation to execute
      * @param fallbackValue Value to return if operation fails
@@ -409,7 +439,7 @@ public class ExceptionHandlingUtils {
         try {
             return operation.get();
         } catch (Exception e) {
-            System.out.println("Operation failed, using fallback value: " + e.getMessage());
+            TestLog.warn("Operation failed, using fallback value: " + e.getMessage());
             return fallbackValue;
         }
     }
@@ -522,7 +552,7 @@ public class ExceptionHandlingUtils {
                 long currentTime = System.currentTimeMillis();
                 if (currentTime - lastFailureTime > resetTimeoutMs) {
                     // Reset the circuit breaker after timeout
-                    System.out.println("Circuit timeout elapsed, resetting to CLOSED state");
+                    TestLog.info("Circuit timeout elapsed, resetting to CLOSED state");
                     failureCount = 0;
                     return false;
                 }
@@ -562,7 +592,7 @@ public class ExceptionHandlingUtils {
     public static <T> T executeWithCircuitBreaker(Supplier<T> operation, CircuitBreaker circuitBreaker,
             T fallbackValue) {
         if (circuitBreaker.isOpen()) {
-            System.out.println("Circuit is open, skipping operation and using fallback");
+            TestLog.warn("Circuit is open, skipping operation and using fallback");
             return fallbackValue;
         }
 
@@ -571,7 +601,7 @@ public class ExceptionHandlingUtils {
             circuitBreaker.recordSuccess();
             return result;
         } catch (Exception e) {
-            System.out.println("Operation failed, recording failure in circuit breaker: " + e.getMessage());
+            TestLog.warn("Operation failed, recording failure in circuit breaker: " + e.getMessage());
             circuitBreaker.recordFailure();
             return fallbackValue;
         }
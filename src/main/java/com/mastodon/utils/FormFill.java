@@ -0,0 +1,206 @@
+package com.mastodon.utils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.WebDriverWait;
+
+/**
+ * Fills a whole form in two round trips: one script sets every field and
+ * fires its input and change events, a second one reads all fields back
+ * What a value means depends on the field it is set on:
+ * - text inputs, passwords and text areas: the text
+ * - select: the value or the visible text of the option
+ * - checkbox: "true" or "false"
+ * - radio button: "true" to check it, or the value of the radio of its group to check
+ * Fields are set in the order they were added. Null values are skipped.
+ * Locators must be CSS, XPath, id, name, class name, tag name or link text
+ */
+public class FormFill {
+
+    private static final String NOT_FOUND = "not found";
+
+    private static final String FIELD_FUNCTIONS = DomQuery.LOCATE_FUNCTION
+            + "function radioFor(element, value) {"
+            + "  if (value === 'true' || value === 'false') { return element; }"
+            + "  var radios = document.getElementsByName(element.name);"
+            + "  for (var i = 0; i < radios.length; i++) {"
+            + "    if (radios[i].type === 'radio' && radios[i].form === element.form && radios[i].value === value) {"
+            + "      return radios[i];"
+            + "    }"
+            + "  }"
+            + "  return null;"
+            + "}"
+            + "function optionFor(select, value) {"
+            + "  for (var i = 0; i < select.options.length; i++) {"
+            + "    var option = select.options[i];"
+            + "    if (option.value === value || option.text.trim() === value) { return option; }"
+            + "  }"
+            + "  return null;"
+            + "}";
+
+    private static final String APPLY_SCRIPT = FIELD_FUNCTIONS
+            + "function fire(element) {"
+            + "  element.dispatchEvent(new Event('input', { bubbles: true }));"
+            + "  element.dispatchEvent(new Event('change', { bubbles: true }));"
+            + "}"
+            + "var fields = arguments[0], errors = [];"
+            + "for (var i = 0; i < fields.length; i++) {"
+            + "  var element = locate(fields[i][0], fields[i][1]), value = fields[i][2], error = null;"
+            + "  if (!element) {"
+            + "    error = '" + NOT_FOUND + "';"
+            + "  } else if (element.type === 'checkbox') {"
+            + "    if (element.checked !== (value === 'true')) { element.click(); }"
+            + "  } else if (element.type === 'radio') {"
+            + "    var radio = radioFor(element, value);"
+            + "    if (!radio) {"
+            + "      error = 'no radio button with value \"' + value + '\"';"
+            + "    } else if (value === 'false') {"
+            + "      if (radio.checked) { radio.checked = false; fire(radio); }"
+            + "    } else if (!radio.checked) {"
+            + "      radio.click();"
+            + "    }"
+            + "  } else if (element.type === 'file') {"
+            + "    error = 'file inputs take a path through sendKeys';"
+            + "  } else if (element.tagName === 'SELECT') {"
+            + "    var option = optionFor(element, value);"
+            + "    if (!option) {"
+            + "      error = 'no option \"' + value + '\"';"
+            + "    } else if (!option.selected) {"
+            + "      option.selected = true;"
+            + "      fire(element);"
+            + "    }"
+            + "  } else if (element.tagName === 'INPUT' || element.tagName === 'TEXTAREA') {"
+            // The native setter, so frameworks that track the value see the change
+            + "    Object.getOwnPropertyDescriptor(Object.getPrototypeOf(element), 'value').set.call(element, value);"
+            + "    fire(element);"
+            + "  } else {"
+            + "    error = 'not a form field';"
+            + "  }"
+            + "  errors.push(error);"
+            + "}"
+            + "return errors;";
+
+    private static final String READ_SCRIPT = FIELD_FUNCTIONS
+            + "var fields = arguments[0], results = [];"
+            + "for (var i = 0; i < fields.length; i++) {"
+            + "  var element = locate(fields[i][0], fields[i][1]), value = fields[i][2], actual = null, ok = false;"
+            + "  if (!element) {"
+            + "  } else if (element.type === 'checkbox'"
+            + "      || element.type === 'radio' && (value === 'true' || value === 'false')) {"
+            + "    actual = String(element.checked);"
+            + "    ok = actual === value;"
+            + "  } else if (element.type === 'radio') {"
+            + "    var radios = document.getElementsByName(element.name);"
+            + "    for (var j = 0; j < radios.length; j++) {"
+            + "      if (radios[j].type === 'radio' && radios[j].form === element.form && radios[j].checked) {"
+            + "        actual = radios[j].value;"
+            + "      }"
+            + "    }"
+            + "    ok = actual === value;"
+            + "  } else if (element.tagName === 'SELECT') {"
+            + "    var selected = element.options[element.selectedIndex];"
+            + "    actual = selected ? selected.value : null;"
+            + "    ok = !!selected && (selected.value === value || selected.text.trim() === value);"
+            + "  } else {"
+            + "    actual = element.value;"
+            // Text areas normalize line breaks to \n
+            + "    ok = actual === value || actual === value.replace(/\\r\\n?/g, '\\n');"
+            + "  }"
+            + "  results.push([actual, ok, !!element && element.type === 'password']);"
+            + "}"
+            + "return results;";
+
+    private final Map<By, String> fields = new LinkedHashMap<>();
+
+    /**
+     * Creates an empty form fill
+     */
+    public FormFill() {
+    }
+
+    /**
+     * Creates a form fill from field locators and values
+     *
+     * @param fields Field locator to value, applied in iteration order
+     */
+    public FormFill(Map<By, ?> fields) {
+        fields.forEach(this::set);
+    }
+
+    /**
+     * Sets a field
+     *
+     * @param locator Field locator
+     * @param value   Text, option, "true"/"false" or Boolean; null leaves the field as it is
+     * @return This form fill
+     */
+    public FormFill set(By locator, Object value) {
+        if (value != null) {
+            if (DomQuery.split(locator) == null) {
+                throw new IllegalArgumentException("Form fields need a locator the page can resolve: " + locator);
+            }
+            fields.put(locator, String.valueOf(value));
+        }
+        return this;
+    }
+
+    /**
+     * Sets every field and checks the values the page then holds
+     * While fields are missing, the values are set again until they all exist
+     * or the timeout passes; setting a field twice has no further effect
+     *
+     * @param driver  WebDriver instance
+     * @param timeout How long to wait for fields that are not in the page yet
+     * @throws IllegalStateException if a field is missing or does not hold its value afterwards
+     */
+    public void apply(WebDriver driver, Duration timeout) {
+        if (fields.isEmpty()) {
+            return;
+        }
+
+        List<List<String>> spec = new ArrayList<>();
+        for (Map.Entry<By, String> field : fields.entrySet()) {
+            String[] howAndWhat = DomQuery.split(field.getKey());
+            spec.add(Arrays.asList(howAndWhat[0], howAndWhat[1], field.getValue()));
+        }
+
+        JavascriptExecutor js = (JavascriptExecutor) driver;
+        List<?>[] errors = new List<?>[1];
+        try {
+            new WebDriverWait(driver, timeout).until(d -> {
+                errors[0] = (List<?>) js.executeScript(APPLY_SCRIPT, spec);
+                return !errors[0].contains(NOT_FOUND);
+            });
+        } catch (TimeoutException e) {
+            // Reported below with the fields that are still missing
+        }
+        List<?> results = (List<?>) js.executeScript(READ_SCRIPT, spec);
+
+        List<String> problems = new ArrayList<>();
+        int i = 0;
+        for (Map.Entry<By, String> field : fields.entrySet()) {
+            Object error = errors[0].get(i);
+            List<?> result = (List<?>) results.get(i);
+            i++;
+            if (error != null) {
+                problems.add(field.getKey() + ": " + error);
+            } else if (!Boolean.TRUE.equals(result.get(1))) {
+                // Password values stay out of the message
+                problems.add(Boolean.TRUE.equals(result.get(2)) ? field.getKey() + ": value was not kept"
+                        : field.getKey() + ": expected '" + field.getValue() + "' but is '" + result.get(0) + "'");
+            }
+        }
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Form fill failed for " + problems);
+        }
+    }
+}
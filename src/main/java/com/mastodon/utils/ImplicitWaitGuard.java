@@ -0,0 +1,158 @@
+package com.mastodon.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.events.EventFiringDecorator;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+/**
+ * Detects element lookups that block on the implicit wait
+ * The guard follows the implicit wait set through the driver and times every
+ * findElement/findElements call. A lookup that finds nothing while an implicit
+ * wait is set has waited for that timeout for nothing; it is logged with its
+ * locator and cost, and flagged as wait mixing when it ran inside an explicit
+ * wait, where the two timeouts add up on every poll. report() prints the total
+ * a driver lost, e.g. after each test
+ */
+public class ImplicitWaitGuard implements WebDriverListener {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(
+            ConfigUtils.getProperty("waits.implicitWaitGuard", "true"));
+    private static final Map<WebDriver, ImplicitWaitGuard> guards = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final ThreadLocal<Long> lookupStart = new ThreadLocal<>();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private final AtomicInteger blockedLookups = new AtomicInteger();
+    private final AtomicInteger mixedLookups = new AtomicInteger();
+    private volatile Duration implicitWait;
+
+    private ImplicitWaitGuard(Duration implicitWait) {
+        this.implicitWait = implicitWait;
+    }
+
+    /**
+     * Wrap a driver so its element lookups are guarded
+     *
+     * @param driver WebDriver instance
+     * @return Guarded driver to use in its place, or the driver itself if the guard is disabled
+     */
+    public static WebDriver watch(WebDriver driver) {
+        if (!ENABLED) {
+            return driver;
+        }
+        ImplicitWaitGuard guard = new ImplicitWaitGuard(driver.manage().timeouts().getImplicitWaitTimeout());
+        WebDriver guarded = new EventFiringDecorator<>(guard).decorate(driver);
+        guards.put(guarded, guard);
+        return guarded;
+    }
+
+    /**
+     * Print and reset the time a guarded driver lost to implicit waits
+     *
+     * @param driver Driver returned by watch
+     * @param scope  What the time was lost in, e.g. the test name
+     * @return Milliseconds lost since the last report, 0 for drivers that are not guarded
+     */
+    public static long report(WebDriver driver, String scope) {
+        ImplicitWaitGuard guard = guards.get(driver);
+        if (guard == null) {
+            return 0;
+        }
+        long blockedMillis = guard.blockedNanos.getAndSet(0) / 1_000_000;
+        int lookups = guard.blockedLookups.getAndSet(0);
+        int mixed = guard.mixedLookups.getAndSet(0);
+        if (lookups > 0) {
+            System.out.println(String.format(
+                    "Implicit wait guard: %s lost %d ms in %d empty lookups (%d inside explicit waits)",
+                    scope, blockedMillis, lookups, mixed));
+        }
+        return blockedMillis;
+    }
+
+    @Override
+    public void afterImplicitlyWait(WebDriver.Timeouts timeouts, Duration duration) {
+        implicitWait = duration;
+    }
+
+    @Override
+    public void beforeFindElement(WebDriver driver, By locator) {
+        lookupStart.set(System.nanoTime());
+    }
+
+    @Override
+    public void beforeFindElements(WebDriver driver, By locator) {
+        lookupStart.set(System.nanoTime());
+    }
+
+    @Override
+    public void beforeFindElement(WebElement element, By locator) {
+        lookupStart.set(System.nanoTime());
+    }
+
+    @Override
+    public void beforeFindElements(WebElement element, By locator) {
+        lookupStart.set(System.nanoTime());
+    }
+
+    @Override
+    public void afterFindElements(WebDriver driver, By locator, List<WebElement> result) {
+        if (result.isEmpty()) {
+            recordEmptyLookup(locator);
+        }
+    }
+
+    @Override
+    public void afterFindElements(WebElement element, By locator, List<WebElement> result) {
+        if (result.isEmpty()) {
+            recordEmptyLookup(locator);
+        }
+    }
+
+    @Override
+    public void onError(Object target, Method method, Object[] args, InvocationTargetException e) {
+        if (method.getName().equals("findElement") && e.getCause() instanceof NoSuchElementException) {
+            recordEmptyLookup(args.length > 0 && args[0] instanceof By ? (By) args[0] : null);
+        }
+    }
+
+    private void recordEmptyLookup(By locator) {
+        Long start = lookupStart.get();
+        lookupStart.remove();
+        if (start == null || implicitWait.isZero()) {
+            return;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        blockedNanos.addAndGet(elapsed);
+        blockedLookups.incrementAndGet();
+        boolean mixed = isInsideExplicitWait();
+        if (mixed) {
+            mixedLookups.incrementAndGet();
+        }
+        TestLog.warn(String.format("Lookup of %s found nothing after %d ms: implicit wait is %d ms%s",
+                locator, elapsed / 1_000_000, implicitWait.toMillis(),
+                mixed ? ", inside an explicit wait that polls it again" : ""));
+    }
+
+    private static boolean isInsideExplicitWait() {
+        for (StackTraceElement frame : Thread.currentThread().getStackTrace()) {
+            if (frame.getClassName().equals("org.openqa.selenium.support.ui.FluentWait")
+                    && frame.getMethodName().equals("until")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
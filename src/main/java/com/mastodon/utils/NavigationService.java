@@ -0,0 +1,149 @@
+package com.mastodon.utils;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.WebDriverWait;
+
+/**
+ * Navigates within the Mastodon web client without reloading it
+ * The web client is a single-page app, so driver.get re-downloads and
+ * re-boots its bundle for every URL. When the browser already shows the
+ * booted app on the same origin and the target is a client-side route, the
+ * service clicks the app's own link to the target, or pushes the path onto
+ * the history and dispatches popstate so the client router renders it. Other
+ * targets (server-rendered pages like /settings or /auth, other origins, a
+ * page without the app) and routes the app does not pick up within a moment
+ * go through driver.get. Each in-app navigation is compared against the
+ * average full load to report the boot time saved
+ */
+public class NavigationService {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(
+            ConfigUtils.getProperty("navigation.inApp", "true"));
+    private static final String[] SPA_PATHS = ConfigUtils.getProperty("navigation.spaPaths",
+            "/home,/notifications,/explore,/public,/conversations,/search,/tags/,/lists,/bookmarks,/favourites,/@")
+            .split(",");
+    private static final Duration ROUTE_TIMEOUT = Duration.ofSeconds(2);
+
+    private static final String ROUTE_SCRIPT =
+            "var origin = arguments[0], path = arguments[1];"
+            + "var app = document.getElementById('mastodon');"
+            + "if (location.origin !== origin || !app || !app.querySelector('.ui')) { return null; }"
+            + "if (location.pathname + location.search + location.hash === path) { return 'current'; }"
+            + "var links = app.querySelectorAll('a[href]');"
+            + "for (var i = 0; i < links.length; i++) {"
+            + "  var link = links[i];"
+            + "  if (link.origin === origin && link.pathname + link.search + link.hash === path"
+            + "      && link.target !== '_blank' && link.getClientRects().length > 0) {"
+            + "    link.click();"
+            + "    return 'link';"
+            + "  }"
+            + "}"
+            + "history.pushState(history.state, '', path);"
+            + "window.dispatchEvent(new PopStateEvent('popstate', { state: history.state }));"
+            + "return 'history';";
+
+    private static final String ROUTED_SCRIPT =
+            "return location.pathname + location.search + location.hash === arguments[0]"
+            + " && !!document.querySelector('#mastodon .ui');";
+
+    private static final AtomicLong fullLoads = new AtomicLong();
+    private static final AtomicLong fullLoadNanos = new AtomicLong();
+    private static final AtomicLong inAppNavigations = new AtomicLong();
+    private static final AtomicLong savedNanos = new AtomicLong();
+
+    /**
+     * Open a URL, in the running web client when possible
+     *
+     * @param driver WebDriver instance
+     * @param url    Absolute URL
+     */
+    public static void navigate(WebDriver driver, String url) {
+        long start = System.nanoTime();
+        String route = ENABLED ? routeInApp(driver, url) : null;
+        long elapsed = System.nanoTime() - start;
+        if (route != null) {
+            inAppNavigations.incrementAndGet();
+            long averageFullLoad = fullLoads.get() > 0 ? fullLoadNanos.get() / fullLoads.get() : 0;
+            if (averageFullLoad > 0) {
+                savedNanos.addAndGet(Math.max(0, averageFullLoad - elapsed));
+            }
+            TestLog.info(String.format("Navigated to %s in-app (%s) in %d ms; a full load averages %d ms",
+                    url, route, elapsed / 1_000_000, averageFullLoad / 1_000_000));
+            return;
+        }
+
+        start = System.nanoTime();
+        driver.get(url);
+        fullLoadNanos.addAndGet(System.nanoTime() - start);
+        fullLoads.incrementAndGet();
+    }
+
+    /**
+     * Print how many navigations stayed in the app and the load time they saved
+     */
+    public static void printSummary() {
+        if (inAppNavigations.get() > 0) {
+            System.out.println(String.format(
+                    "Navigation: %d in-app navigations, %d full page loads, about %d ms of page loads saved",
+                    inAppNavigations.get(), fullLoads.get(), savedNanos.get() / 1_000_000));
+        }
+    }
+
+    /**
+     * Route to the URL in the running client
+     *
+     * @return How the route was taken, or null if the page has to be loaded
+     */
+    private static String routeInApp(WebDriver driver, String url) {
+        if (!(driver instanceof JavascriptExecutor)) {
+            return null;
+        }
+        URI uri = URI.create(url);
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getScheme() == null || uri.getRawAuthority() == null || !isSpaPath(path)) {
+            return null;
+        }
+        String target = path + (uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "")
+                + (uri.getRawFragment() != null ? "#" + uri.getRawFragment() : "");
+        String origin = uri.getScheme() + "://" + uri.getRawAuthority();
+
+        try {
+            JavascriptExecutor js = (JavascriptExecutor) driver;
+            String route = (String) js.executeScript(ROUTE_SCRIPT, origin, target);
+            if (route == null) {
+                return null;
+            }
+            new WebDriverWait(driver, ROUTE_TIMEOUT, Duration.ofMillis(50))
+                    .until(d -> Boolean.TRUE.equals(js.executeScript(ROUTED_SCRIPT, target)));
+            return route;
+        } catch (TimeoutException e) {
+            TestLog.warn("The web client did not route to " + target + ", loading the page instead");
+            return null;
+        } catch (RuntimeException e) {
+            // e.g. a page without a document yet; a full load still gets there
+            return null;
+        }
+    }
+
+    private static boolean isSpaPath(String path) {
+        for (String spaPath : SPA_PATHS) {
+            String prefix = spaPath.trim();
+            if (prefix.isEmpty()) {
+                continue;
+            }
+            // "/tags/" and "/@" are prefixes; other entries match the route and its sub-routes
+            boolean matches = prefix.endsWith("/") || prefix.endsWith("@") ? path.startsWith(prefix)
+                    : path.equals(prefix) || path.startsWith(prefix + "/");
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,210 @@
+package com.mastodon.utils;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Logging facade for framework and test code
+ * While capture is active on a thread, lines go into a bounded per-thread
+ * buffer instead of the console. A listener decides from the test result
+ * whether the buffer is kept (failing test) or dropped (passing test), and
+ * ends the capture after the test's teardown, so @AfterMethod output still
+ * belongs to its own test. Kept lines are then written to a per-test file.
+ * Without an active capture, lines are written to the console as before
+ */
+public class TestLog {
+
+    private static final String LOG_DIR = "test-output/logs";
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+    private static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    private static final int MAX_LINES = Integer.parseInt(ConfigUtils.getProperty("log.bufferLines", "500"));
+
+    private static final ThreadLocal<Buffer> buffers = new ThreadLocal<>();
+    private static final Map<Thread, Buffer> activeBuffers = new ConcurrentHashMap<>();
+
+    /**
+     * Bounded line buffer that drops its oldest lines when full
+     */
+    private static class Buffer {
+        private final ArrayDeque<String> lines = new ArrayDeque<>();
+        private int droppedLines;
+        // Set once the test's result is known; keepAs is where kept lines are written
+        private boolean decided;
+        private File keepAs;
+
+        private void add(String line) {
+            if (lines.size() == MAX_LINES) {
+                lines.removeFirst();
+                droppedLines++;
+            }
+            lines.addLast(line);
+        }
+    }
+
+    /**
+     * Starts capturing log lines on the current thread
+     */
+    public static void beginCapture() {
+        if (buffers.get() == null) {
+            Buffer buffer = new Buffer();
+            buffers.set(buffer);
+            activeBuffers.put(Thread.currentThread(), buffer);
+        }
+    }
+
+    /**
+     * Checks whether the current thread is capturing log lines
+     *
+     * @return true if capture is active
+     */
+    public static boolean isCapturing() {
+        Buffer buffer = buffers.get();
+        return buffer != null && activeBuffers.get(Thread.currentThread()) == buffer;
+    }
+
+    /**
+     * Logs an informational line
+     *
+     * @param message Message to log
+     */
+    public static void info(String message) {
+        log("INFO", message, null);
+    }
+
+    /**
+     * Logs a warning line
+     *
+     * @param message Message to log
+     */
+    public static void warn(String message) {
+        log("WARN", message, null);
+    }
+
+    /**
+     * Logs an error line with an optional stack trace
+     *
+     * @param message   Message to log
+     * @param throwable Cause to include, may be null
+     */
+    public static void error(String message, Throwable throwable) {
+        log("ERROR", message, throwable);
+    }
+
+    /**
+     * Keeps the current capture: when it ends, the lines are written to a
+     * per-test log file, including lines logged after this call
+     *
+     * @param testName Name used for the log file
+     * @return Absolute path the log file is written to, null if nothing is captured
+     */
+    public static String keep(String testName) {
+        if (!isCapturing()) {
+            return null;
+        }
+        Buffer buffer = buffers.get();
+        buffer.decided = true;
+        if (buffer.keepAs == null) {
+            buffer.keepAs = new File(LOG_DIR, String.format("%s_%s.log", testName.replaceAll("[^a-zA-Z0-9]", "_"),
+                    LocalDateTime.now().format(FILE_TIME_FORMAT)));
+        }
+        return buffer.keepAs.getAbsolutePath();
+    }
+
+    /**
+     * Drops the current capture when it ends, unless keep() was or is called for it
+     */
+    public static void discardOnEnd() {
+        if (isCapturing()) {
+            buffers.get().decided = true;
+        }
+    }
+
+    /**
+     * Checks whether keep() or discardOnEnd() was called for the current capture
+     *
+     * @return true if the test owning the capture has its result
+     */
+    public static boolean isDecided() {
+        return isCapturing() && buffers.get().decided;
+    }
+
+    /**
+     * Ends capture on the current thread, writing the lines if keep() was called
+     */
+    public static void finish() {
+        Buffer buffer = endCapture();
+        if (buffer != null && buffer.keepAs != null) {
+            write(buffer);
+        }
+    }
+
+    /**
+     * Ends the captures left on any thread, e.g. of a test whose teardown was
+     * skipped; kept ones are written, the others dropped
+     */
+    public static void finishAll() {
+        for (Buffer buffer : activeBuffers.values()) {
+            if (buffer.keepAs != null) {
+                write(buffer);
+            }
+        }
+        activeBuffers.clear();
+    }
+
+    private static void write(Buffer buffer) {
+        File logDir = buffer.keepAs.getParentFile();
+        if (!logDir.exists()) {
+            logDir.mkdirs();
+        }
+
+        try (PrintWriter writer = new PrintWriter(new FileWriter(buffer.keepAs))) {
+            if (buffer.droppedLines > 0) {
+                writer.println("... " + buffer.droppedLines + " earlier lines dropped (log.bufferLines="
+                        + MAX_LINES + ")");
+            }
+            for (String line : buffer.lines) {
+                writer.println(line);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write test log: " + e.getMessage());
+        }
+    }
+
+    private static Buffer endCapture() {
+        Buffer buffer = buffers.get();
+        buffers.remove();
+        activeBuffers.remove(Thread.currentThread());
+        return buffer;
+    }
+
+    private static void log(String level, String message, Throwable throwable) {
+        if (!isCapturing()) {
+            // Not capturing (or dropped by discardAll): keep the original console behaviour
+            buffers.remove();
+            System.out.println(message);
+            if (throwable != null) {
+                throwable.printStackTrace();
+            }
+            return;
+        }
+
+        Buffer buffer = buffers.get();
+        buffer.add(LocalDateTime.now().format(TIME_FORMAT) + " [" + Thread.currentThread().getName() + "] "
+                + level + " " + message);
+        if (throwable != null) {
+            StringWriter stackTrace = new StringWriter();
+            throwable.printStackTrace(new PrintWriter(stackTrace));
+            for (String traceLine : stackTrace.toString().split("\\R")) {
+                buffer.add(traceLine);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.mastodon.utils;
+
+import java.util.Collections;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.HasDevTools;
+
+/**
+ * Enters text in one step instead of one key event per character
+ * The element is focused with the caret at the end, then the whole text is
+ * inserted with the DevTools Input.insertText command, which the browser
+ * handles like typed or pasted text, so beforeinput/input events reach React.
+ * Drivers without DevTools get the value through the native value setter
+ * followed by input and change events, which React also picks up. Text with
+ * Selenium key codes (e.g. Keys.ENTER), elements that cannot take focus, and
+ * runs with input.fastTextEntry=false fall back to WebElement.sendKeys. Tests
+ * about typing itself should call sendKeys directly
+ */
+public class TextEntry {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(
+            ConfigUtils.getProperty("input.fastTextEntry", "true"));
+
+    private static final String FOCUS_SCRIPT =
+            "var element = arguments[0];"
+            + "element.focus();"
+            + "if (typeof element.setSelectionRange === 'function' && typeof element.value === 'string') {"
+            + "  try { element.setSelectionRange(element.value.length, element.value.length); } catch (e) {}"
+            + "}"
+            + "return document.activeElement === element;";
+
+    private static final String SET_VALUE_SCRIPT =
+            "var element = arguments[0], text = arguments[1];"
+            + "var prototype = element instanceof HTMLTextAreaElement ? HTMLTextAreaElement.prototype"
+            + "    : element instanceof HTMLInputElement ? HTMLInputElement.prototype : null;"
+            + "if (!prototype) { return false; }"
+            + "Object.getOwnPropertyDescriptor(prototype, 'value').set.call(element, element.value + text);"
+            + "element.dispatchEvent(new Event('input', { bubbles: true }));"
+            + "element.dispatchEvent(new Event('change', { bubbles: true }));"
+            + "return true;";
+
+    /**
+     * Append text to an input, text area or editable element, like sendKeys
+     *
+     * @param driver  WebDriver instance
+     * @param element Element to enter the text into
+     * @param text    Text to enter
+     */
+    public static void enter(WebDriver driver, WebElement element, String text) {
+        if (!ENABLED || text.isEmpty() || hasKeyCodes(text) || !(driver instanceof JavascriptExecutor)) {
+            element.sendKeys(text);
+            return;
+        }
+
+        JavascriptExecutor js = (JavascriptExecutor) driver;
+        if (!Boolean.TRUE.equals(js.executeScript(FOCUS_SCRIPT, element))) {
+            element.sendKeys(text);
+            return;
+        }
+        if (driver instanceof HasDevTools && insertText(((HasDevTools) driver).getDevTools(), text)) {
+            return;
+        }
+        if (!Boolean.TRUE.equals(js.executeScript(SET_VALUE_SCRIPT, element, text))) {
+            element.sendKeys(text);
+        }
+    }
+
+    private static boolean insertText(DevTools devTools, String text) {
+        try {
+            devTools.createSessionIfThereIsNotOne();
+            devTools.send(new Command<Void>("Input.insertText", Collections.singletonMap("text", text)));
+            return true;
+        } catch (Exception e) {
+            TestLog.warn("Input.insertText failed, setting the value instead: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Selenium Keys are private use characters that only sendKeys turns into key presses
+     */
+    private static boolean hasKeyCodes(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '\uE000' && c <= '\uF8FF') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,167 @@
+package com.mastodon.utils;
+
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates random and unique test content without shared state between threads
+ * Each thread draws from its own SplittableRandom, split once from a root
+ * stream, so generating content never contends on a lock or a shared seed.
+ * Unique tokens combine the run id, the worker (JVM) id, a thread number and
+ * a per-thread counter, so two tokens can never be equal within a run, and
+ * the random run id keeps them apart from posts left over by earlier runs.
+ * Tokens and the run hashtag are lowercase letters and digits only, so
+ * Mastodon indexes them as one word and they can be searched for directly
+ *
+ * The run id can be fixed with -Drun.id (letters and digits), e.g. to give
+ * every worker JVM of a run the same hashtag; the worker id defaults to the
+ * process id and can be set to another number with -Dworker.id, which JVMs on
+ * different machines sharing a run id need
+ */
+public class UniqueContentGenerator {
+
+    public static final String RUN_ID_PROPERTY = "run.id";
+    public static final String WORKER_ID_PROPERTY = "worker.id";
+
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final String NUMBERS = "0123456789";
+    private static final String ALPHANUMERIC = LETTERS + NUMBERS;
+    private static final String HASHTAG_PREFIX = "mt";
+    private static final int RUN_ID_RANDOM_CHARS = 4;
+
+    private static final String RUN_ID = idProperty(RUN_ID_PROPERTY, "[a-z0-9]+", newRunId());
+    private static final String WORKER_ID = idProperty(WORKER_ID_PROPERTY, "[0-9]+",
+            Long.toString(ProcessHandle.current().pid()));
+
+    // Same syntax in Java and JavaScript, so page scripts can find tokens too
+    private static final String TOKEN_REGEX = RUN_ID + "w[0-9]+t[0-9]+n[0-9a-z]+";
+    private static final Pattern TOKEN_PATTERN = Pattern.compile(TOKEN_REGEX);
+
+    private static final SplittableRandom root = new SplittableRandom(new SecureRandom().nextLong());
+    private static final AtomicInteger threadNumbers = new AtomicInteger();
+    private static final ThreadLocal<ThreadState> states = ThreadLocal.withInitial(ThreadState::new);
+
+    /**
+     * Random stream and token counter of one thread
+     */
+    private static class ThreadState {
+        private final SplittableRandom random;
+        private final String prefix;
+        private long counter;
+
+        private ThreadState() {
+            // split() is not thread-safe, but runs only once per thread
+            synchronized (root) {
+                random = root.split();
+            }
+            // Worker and thread numbers are decimal, so the letters between the parts keep them apart
+            prefix = RUN_ID + "w" + WORKER_ID + "t" + threadNumbers.incrementAndGet() + "n";
+        }
+    }
+
+    private UniqueContentGenerator() {
+    }
+
+    /**
+     * Get the id of this run
+     *
+     * @return Run id, lowercase letters and digits
+     */
+    public static String getRunId() {
+        return RUN_ID;
+    }
+
+    /**
+     * Get the hashtag every unique text of this run carries, to find all
+     * content a run created
+     *
+     * @return Hashtag including the leading '#'
+     */
+    public static String getRunHashtag() {
+        return "#" + HASHTAG_PREFIX + RUN_ID;
+    }
+
+    /**
+     * Generate a token that is unique across threads, worker JVMs and runs
+     *
+     * @return Token of lowercase letters and digits
+     */
+    public static String uniqueToken() {
+        ThreadState state = states.get();
+        return state.prefix + Long.toString(state.counter++, Character.MAX_RADIX);
+    }
+
+    /**
+     * Get the regular expression matching the tokens of this run
+     *
+     * @return Regular expression valid in Java and JavaScript
+     */
+    public static String getTokenRegex() {
+        return TOKEN_REGEX;
+    }
+
+    /**
+     * Find the token of this run in a text
+     *
+     * @param text Text, e.g. one returned by uniqueText
+     * @return First token in the text, or null if it has none
+     */
+    public static String findToken(String text) {
+        Matcher matcher = TOKEN_PATTERN.matcher(text);
+        return matcher.find() ? matcher.group() : null;
+    }
+
+    /**
+     * Generate text for content the test looks up again, e.g. a post or a message
+     *
+     * @param text Readable text
+     * @return Text followed by a unique token and the run hashtag
+     */
+    public static String uniqueText(String text) {
+        return text + " " + uniqueToken() + " " + getRunHashtag();
+    }
+
+    /**
+     * Generate a random string from the calling thread's own random stream
+     *
+     * @param length         Length of the string
+     * @param includeLetters Whether to include letters
+     * @param includeNumbers Whether to include numbers; with neither, both are used
+     * @return Random string
+     */
+    public static String randomString(int length, boolean includeLetters, boolean includeNumbers) {
+        String alphabet = includeLetters == includeNumbers ? ALPHANUMERIC : includeLetters ? LETTERS : NUMBERS;
+        SplittableRandom random = states.get().random;
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+
+    private static String newRunId() {
+        // Seconds since the epoch keep run ids ordered; the random suffix separates runs started together
+        StringBuilder id = new StringBuilder(Long.toString(System.currentTimeMillis() / 1000, Character.MAX_RADIX));
+        SecureRandom random = new SecureRandom();
+        for (int i = 0; i < RUN_ID_RANDOM_CHARS; i++) {
+            id.append(Character.forDigit(random.nextInt(Character.MAX_RADIX), Character.MAX_RADIX));
+        }
+        return id.toString();
+    }
+
+    private static String idProperty(String name, String pattern, String defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        String id = value.trim().toLowerCase(Locale.ROOT);
+        if (!id.matches(pattern)) {
+            throw new IllegalArgumentException("-D" + name + " must match " + pattern + ": " + value);
+        }
+        return id;
+    }
+}
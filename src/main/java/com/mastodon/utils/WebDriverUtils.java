@@ -6,7 +6,6 @@ import java.text.SimpleDateFormat;
 import java.time.Duration;
 import java.util.Date;
 
-import org.apache.commons.lang3.RandomStringUtils;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.TakesScreenshot;
@@ -47,7 +46,7 @@ public class WebDriverUtils {
         try {
             FileHandler.copy(source, destination);
         } catch (IOException e) {
-            e.printStackTrace();
+            TestLog.error("Failed to save screenshot: " + e.getMessage(), e);
         }
 
         return screenshotPath;
@@ -91,6 +90,8 @@ public class WebDriverUtils {
 
     /**
      * Generate random string for test data
+     * Drawn from a per-thread random stream, so parallel tests do not contend;
+     * use UniqueContentGenerator for text that must not repeat
      * 
      * @param length         Length of the string
      * @param includeLetters Whether to include letters
@@ -98,6 +99,6 @@ public class WebDriverUtils {
      * @return Random string
      */
     public static String generateRandomString(int length, boolean includeLetters, boolean includeNumbers) {
-        return RandomStringUtils.random(length, includeLetters, includeNumbers);
+        return UniqueContentGenerator.randomString(length, includeLetters, includeNumbers);
     }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.mastodon.testdata;
+
+import com.mastodon.utils.DataColumn;
+
+/**
+ * One row of LoginTestData, bound by RowBinder
+ */
+public class LoginRow {
+
+    /**
+     * Outcome a login attempt is expected to have
+     */
+    public enum ExpectedResult {
+        SUCCESS, FAILURE, BLOCKED
+    }
+
+    private String username;
+    private String password;
+    private ExpectedResult expectedResult;
+    @DataColumn("testDescription")
+    private String description;
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public ExpectedResult getExpectedResult() {
+        return expectedResult;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,55 @@
+package com.mastodon.testdata;
+
+import java.time.LocalDate;
+
+/**
+ * One row of UserProfileTestData, bound by RowBinder
+ */
+public class ProfileRow {
+
+    private String firstName;
+    private String lastName;
+    private String email;
+    private String bio;
+    private String location;
+    private String website;
+    private LocalDate birthDate;
+    private String testScenario;
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getBio() {
+        return bio;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public String getWebsite() {
+        return website;
+    }
+
+    public LocalDate getBirthDate() {
+        return birthDate;
+    }
+
+    public String getTestScenario() {
+        return testScenario;
+    }
+
+    @Override
+    public String toString() {
+        return testScenario;
+    }
+}
@@ -13,6 +13,7 @@ import org.testng.annotations.Test;
 import com.mastodon.pages.HomePage;
 import com.mastodon.pages.LoginPage;
 import com.mastodon.utils.ConfigUtils;
+import com.mastodon.utils.ResourceGovernor;
 
 public class ActionClassTests {
     private WebDriver driver;
@@ -22,7 +23,7 @@ public class ActionClassTests {
 
     @BeforeClass
     public void setUp() {
-        driver = new ChromeDriver();
+        driver = ResourceGovernor.openSession(ChromeDriver::new);
         actions = new Actions(driver);
         loginPage = new LoginPage(driver);
         homePage = loginPage.login(ConfigUtils.getMastodonEmail(), ConfigUtils.getMastodonPassword());
@@ -70,6 +71,6 @@ public class ActionClassTests {
 
     @AfterClass
     public void tearDown() {
-        driver.quit();
+        ResourceGovernor.closeSession(driver);
     }
 }
\ No newline at end of file
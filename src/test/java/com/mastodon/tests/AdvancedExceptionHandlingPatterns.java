@@ -19,6 +19,8 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.mastodon.utils.ResourceGovernor;
+
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -40,7 +42,7 @@ public class AdvancedExceptionHandlingPatterns {
 
     @BeforeMethod
     public void setUp() {
-        driver = new ChromeDriver();
+        driver = ResourceGovernor.openSession(ChromeDriver::new);
         driver.manage().window().maximize();
 
         // Create screenshots directory if it doesn't exist
@@ -57,9 +59,7 @@ public class AdvancedExceptionHandlingPatterns {
             takeScreenshot(result.getName() + "_failure");
         }
 
-        if (driver != null) {
-            driver.quit();
-        }
+        ResourceGovernor.closeSession(driver);
     }
 
     /**
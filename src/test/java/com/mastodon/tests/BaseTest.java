@@ -3,9 +3,16 @@ package com.mastodon.tests;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
+import org.testng.ITestResult;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 
+import com.mastodon.utils.ImplicitWaitGuard;
+import com.mastodon.utils.NavigationService;
+import com.mastodon.utils.ScreencastRecorder;
+import com.mastodon.utils.RerunOrchestrator;
+import com.mastodon.utils.ResourceGovernor;
+
 import io.github.bonigarcia.wdm.WebDriverManager;
 
 /**
@@ -22,23 +29,40 @@ public class BaseTest {
      */
     @BeforeMethod
     public void setUp() {
+        // Reruns continue in a browser that is already started and logged in
+        WebDriver warmDriver = RerunOrchestrator.takeWarmDriver();
+        if (warmDriver != null) {
+            driver = warmDriver;
+            staticDriver = driver;
+            ScreencastRecorder.start(driver);
+            NavigationService.navigate(driver, BASE_URL);
+            return;
+        }
+
         WebDriverManager.chromedriver().setup();
         ChromeOptions options = new ChromeOptions();
         options.addArguments("--start-maximized");
         options.addArguments("--disable-notifications");
 
-        driver = new ChromeDriver(options);
+        // Waits while the machine has no headroom for another browser
+        driver = ResourceGovernor.openSession(() -> ImplicitWaitGuard.watch(new ChromeDriver(options)));
         staticDriver = driver; // Store reference for TestListener
-        driver.get(BASE_URL);
+        ScreencastRecorder.start(driver);
+        NavigationService.navigate(driver, BASE_URL);
     }
 
     /**
      * Teardown method that runs after each test method
      */
     @AfterMethod
-    public void tearDown() {
+    public void tearDown(ITestResult result) {
         if (driver != null) {
-            driver.quit();
+            ImplicitWaitGuard.report(driver, result.getName());
+            ScreencastRecorder.release();
+            // Browsers of tests deferred to the rerun pass stay open for it
+            if (!RerunOrchestrator.parkDriver(result, driver)) {
+                ResourceGovernor.closeSession(driver);
+            }
             staticDriver = null; // Clear static reference
         }
     }
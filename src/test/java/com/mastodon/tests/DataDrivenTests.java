@@ -1,7 +1,11 @@
 package com.mastodon.tests;
 
+import com.mastodon.testdata.LoginRow;
+import com.mastodon.testdata.ProfileRow;
 import com.mastodon.utils.CSVDataReader;
+import com.mastodon.utils.CoveringArray;
 import com.mastodon.utils.ExcelDataReader;
+import com.mastodon.utils.ResourceGovernor;
 import com.mastodon.utils.ScreenshotUtils;
 import org.testng.Assert;
 import org.testng.annotations.*;
@@ -10,8 +14,11 @@ import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.firefox.FirefoxDriver;
 import org.openqa.selenium.edge.EdgeDriver;
 
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Data-driven test class demonstrating the use of CSV and Excel data readers
@@ -33,13 +40,13 @@ public class DataDrivenTests {
         // Initialize WebDriver based on browser parameter
         switch (browser.toLowerCase()) {
             case "firefox":
-                driver = new FirefoxDriver();
+                driver = ResourceGovernor.openSession(FirefoxDriver::new);
                 break;
             case "edge":
-                driver = new EdgeDriver();
+                driver = ResourceGovernor.openSession(EdgeDriver::new);
                 break;
             default:
-                driver = new ChromeDriver();
+                driver = ResourceGovernor.openSession(ChromeDriver::new);
                 break;
         }
 
@@ -49,103 +56,87 @@ public class DataDrivenTests {
 
     @AfterMethod
     public void tearDown() {
-        if (driver != null) {
-            driver.quit();
-        }
+        ResourceGovernor.closeSession(driver);
     }
 
     /**
      * Data provider for login test data from CSV file
+     * Rows are streamed, so the first test starts before the file is fully read
      * 
-     * @return Object array containing test data
+     * @return Iterator over the test data
      */
     @DataProvider(name = "loginDataCSV")
-    public Object[][] getLoginDataFromCSV() {
-        try {
-            CSVDataReader csvReader = new CSVDataReader(CSV_LOGIN_DATA);
-            String[][] data = csvReader.getAllData(false); // Exclude headers
-
-            // Convert to Object[][] for TestNG
-            Object[][] testData = new Object[data.length][4];
-            for (int i = 0; i < data.length; i++) {
-                testData[i][0] = data[i][0]; // username
-                testData[i][1] = data[i][1]; // password
-                testData[i][2] = data[i][2]; // expectedResult
-                testData[i][3] = data[i][3]; // testDescription
+    public Iterator<Object[]> getLoginDataFromCSV() {
+        CSVDataReader csvReader = new CSVDataReader(CSV_LOGIN_DATA);
+        Iterator<String[]> rows = csvReader.iterateRows(false); // Exclude headers
+
+        return new Iterator<Object[]>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
             }
-            return testData;
-        } catch (Exception e) {
-            System.err.println("Error reading CSV login data: " + e.getMessage());
-            return new Object[0][0];
-        }
+
+            @Override
+            public Object[] next() {
+                String[] row = rows.next();
+                // username, password, expectedResult, testDescription
+                return new Object[] { row[0], row[1], row[2], row[3] };
+            }
+        };
     }
 
     /**
-     * Data provider for login test data using Map approach from CSV
+     * Data provider for login test data from CSV bound to LoginRow objects
      * 
-     * @return Object array containing test data as maps
+     * @return Iterator over the test data as typed rows
      */
-    @DataProvider(name = "loginDataCSVMap")
-    public Object[][] getLoginDataFromCSVAsMap() {
-        try {
-            List<Map<String, String>> dataList = CSVDataReader.readCSVDataAsMapList(CSV_LOGIN_DATA);
-            Object[][] testData = new Object[dataList.size()][1];
-
-            for (int i = 0; i < dataList.size(); i++) {
-                testData[i][0] = dataList.get(i);
-            }
-            return testData;
-        } catch (Exception e) {
-            System.err.println("Error reading CSV login data as map: " + e.getMessage());
-            return new Object[0][0];
-        }
+    @DataProvider(name = "loginRowsCSV")
+    public Iterator<Object[]> getLoginRowsFromCSV() {
+        return asParameters(new CSVDataReader(CSV_LOGIN_DATA).iterateAs(LoginRow.class));
     }
 
     /**
      * Data provider for user profile data from CSV file
      * 
-     * @return Object array containing profile test data
+     * @return Iterator over the profile test data as typed rows
      */
     @DataProvider(name = "profileDataCSV")
-    public Object[][] getProfileDataFromCSV() {
-        try {
-            CSVDataReader csvReader = new CSVDataReader(CSV_PROFILE_DATA);
-            List<Map<String, String>> dataList = csvReader.getDataAsMapList();
+    public Iterator<Object[]> getProfileDataFromCSV() {
+        return asParameters(new CSVDataReader(CSV_PROFILE_DATA).iterateAs(ProfileRow.class));
+    }
 
-            Object[][] testData = new Object[dataList.size()][1];
-            for (int i = 0; i < dataList.size(); i++) {
-                testData[i][0] = dataList.get(i);
+    /**
+     * Wraps each streamed row as the single parameter of a test invocation
+     */
+    private static Iterator<Object[]> asParameters(Iterator<?> rows) {
+        return new Iterator<Object[]>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
             }
-            return testData;
-        } catch (Exception e) {
-            System.err.println("Error reading CSV profile data: " + e.getMessage());
-            return new Object[0][0];
-        }
+
+            @Override
+            public Object[] next() {
+                return new Object[] { rows.next() };
+            }
+        };
     }
 
     /**
      * Data provider for Excel login data (when Excel file is available)
      * 
-     * @return Object array containing test data from Excel
+     * @return Iterator over the test data from Excel
      */
     @DataProvider(name = "loginDataExcel")
-    public Object[][] getLoginDataFromExcel() {
+    public Iterator<Object[]> getLoginDataFromExcel() {
         try {
             // Note: This will work when you have an actual Excel file
             // For now, it returns empty data since we created an empty Excel file
-            ExcelDataReader excelReader = new ExcelDataReader(EXCEL_LOGIN_DATA);
-            List<Map<String, String>> dataList = excelReader.getDataAsMapList("LoginData");
-            excelReader.closeWorkbook();
-
-            Object[][] testData = new Object[dataList.size()][1];
-            for (int i = 0; i < dataList.size(); i++) {
-                testData[i][0] = dataList.get(i);
-            }
-            return testData;
+            return asParameters(new ExcelDataReader(EXCEL_LOGIN_DATA).iterateAs("LoginData", LoginRow.class));
         } catch (Exception e) {
             System.err.println("Error reading Excel login data: " + e.getMessage());
             // Fallback to CSV data if Excel fails
-            return getLoginDataFromCSV();
+            return getLoginRowsFromCSV();
         }
     }
 
@@ -200,55 +191,52 @@ public class DataDrivenTests {
     }
 
     /**
-     * Test method for login functionality using CSV data as Map
+     * Test method for login functionality using CSV data bound to LoginRow
      * 
-     * @param testData Map containing test data
+     * @param testData Typed login test data
      */
-    @Test(dataProvider = "loginDataCSVMap", groups = { "login", "datadriven", "map" })
-    public void testLoginWithCSVMapData(Map<String, String> testData) {
+    @Test(dataProvider = "loginRowsCSV", groups = { "login", "datadriven", "binding" })
+    public void testLoginWithCSVRowData(LoginRow testData) {
         try {
-            String username = testData.get("username");
-            String password = testData.get("password");
-            String expectedResult = testData.get("expectedResult");
-            String testDescription = testData.get("testDescription");
+            String testDescription = testData.getDescription();
 
-            System.out.println("Executing map-based test: " + testDescription);
+            System.out.println("Executing row-based test: " + testDescription);
 
             // Navigate to login page
             driver.get("https://mastodon.social/auth/sign_in");
             Thread.sleep(2000);
 
             // Take screenshot
-            screenshotUtils.takeScreenshot("map_login_test_" + testDescription.replaceAll(" ", "_"));
+            screenshotUtils.takeScreenshot("row_login_test_" + testDescription.replaceAll(" ", "_"));
 
             // Perform login validation
-            boolean loginSuccess = performLogin(username, password);
+            boolean loginSuccess = performLogin(testData.getUsername(), testData.getPassword());
 
             // Validate based on expected result
-            if ("success".equals(expectedResult)) {
+            if (testData.getExpectedResult() == LoginRow.ExpectedResult.SUCCESS) {
                 Assert.assertTrue(loginSuccess, "Login should succeed for: " + testDescription);
             } else {
                 Assert.assertFalse(loginSuccess, "Login should fail for: " + testDescription);
             }
 
         } catch (Exception e) {
-            screenshotUtils.takeScreenshotOnFailure("map_login_test_failure");
-            Assert.fail("Map-based test failed. Error: " + e.getMessage());
+            screenshotUtils.takeScreenshotOnFailure("row_login_test_failure");
+            Assert.fail("Row-based test failed. Error: " + e.getMessage());
         }
     }
 
     /**
      * Test method for user profile validation using CSV data
      * 
-     * @param profileData Map containing profile test data
+     * @param profileData Typed profile test data
      */
     @Test(dataProvider = "profileDataCSV", groups = { "profile", "datadriven" })
-    public void testUserProfileWithCSVData(Map<String, String> profileData) {
+    public void testUserProfileWithCSVData(ProfileRow profileData) {
         try {
-            String firstName = profileData.get("firstName");
-            String lastName = profileData.get("lastName");
-            String email = profileData.get("email");
-            String testScenario = profileData.get("testScenario");
+            String firstName = profileData.getFirstName();
+            String lastName = profileData.getLastName();
+            String email = profileData.getEmail();
+            String testScenario = profileData.getTestScenario();
 
             System.out.println("Executing profile test: " + testScenario);
             System.out.println("User: " + firstName + " " + lastName + " (" + email + ")");
@@ -265,7 +253,7 @@ public class DataDrivenTests {
 
         } catch (Exception e) {
             screenshotUtils.takeScreenshotOnFailure("profile_test_failure");
-            Assert.fail("Profile test failed for scenario: " + profileData.get("testScenario") + ". Error: "
+            Assert.fail("Profile test failed for scenario: " + profileData.getTestScenario() + ". Error: "
                     + e.getMessage());
         }
     }
@@ -273,10 +261,10 @@ public class DataDrivenTests {
     /**
      * Demonstration method for Excel data provider
      * 
-     * @param testData Map containing test data from Excel
+     * @param testData Typed login test data from Excel
      */
     @Test(dataProvider = "loginDataExcel", groups = { "excel", "datadriven" }, enabled = false)
-    public void testLoginWithExcelData(Map<String, String> testData) {
+    public void testLoginWithExcelData(LoginRow testData) {
         try {
             System.out.println("Executing Excel-based test");
             // Implementation similar to CSV tests
@@ -320,6 +308,26 @@ public class DataDrivenTests {
         }
     }
 
+    /**
+     * Test to demonstrate reducing a parameter matrix to a pairwise covering set
+     */
+    @Test(groups = { "utility", "datadriven" })
+    public void testPairwiseCoveringSet() {
+        CoveringArray matrix = CoveringArray.pairwise()
+                .parameter("browser", "chrome", "firefox", "edge")
+                .column(new CSVDataReader(CSV_LOGIN_DATA), "expectedResult")
+                .column(new CSVDataReader(CSV_PROFILE_DATA), "location");
+        List<Map<String, String>> rows = matrix.generate();
+
+        Assert.assertTrue(rows.size() < matrix.getFullProductSize(),
+                "Covering set should be smaller than the cross product");
+        Set<String> browserResultPairs = new HashSet<>();
+        for (Map<String, String> row : rows) {
+            browserResultPairs.add(row.get("browser") + "/" + row.get("expectedResult"));
+        }
+        Assert.assertEquals(browserResultPairs.size(), 9, "Every browser should meet every expected result");
+    }
+
     /**
      * Helper method to simulate login process
      * 
@@ -363,14 +371,14 @@ public class DataDrivenTests {
     /**
      * Helper method to validate profile data
      * 
-     * @param profileData Map containing profile information
+     * @param profileData Typed profile information
      */
-    private void validateProfileData(Map<String, String> profileData) {
+    private void validateProfileData(ProfileRow profileData) {
         // Demonstration of profile validation logic
-        String firstName = profileData.get("firstName");
-        String lastName = profileData.get("lastName");
-        String email = profileData.get("email");
-        String website = profileData.get("website");
+        String firstName = profileData.getFirstName();
+        String lastName = profileData.getLastName();
+        String email = profileData.getEmail();
+        String website = profileData.getWebsite();
 
         // Basic validations
         Assert.assertNotNull(firstName, "First name should not be null");
@@ -379,7 +387,7 @@ public class DataDrivenTests {
         Assert.assertTrue(email.contains("@"), "Email should be valid");
 
         // Website validation (if provided)
-        if (website != null && !website.trim().isEmpty()) {
+        if (website != null) {
             Assert.assertTrue(website.startsWith("http"), "Website should be a valid URL");
         }
 
@@ -2,6 +2,7 @@ package com.mastodon.tests;
 
 import com.mastodon.utils.ExceptionHandlingUtils;
 import com.mastodon.utils.ExceptionHandlingUtils.CircuitBreaker;
+import com.mastodon.utils.NavigationService;
 import org.openqa.selenium.By;
 import org.openqa.selenium.ElementClickInterceptedException;
 import org.openqa.selenium.ElementNotInteractableException;
@@ -71,7 +72,7 @@ public class ExceptionHandlingDemoTest extends BaseTest {
     @Test
     public void testWaitForElement() {
         // Navigate to the home page
-        driver.get("https://mastodon.social/home");
+        NavigationService.navigate(driver, "https://mastodon.social/home");
 
         try {
             // Wait for the timeline to load with a custom timeout
@@ -91,7 +92,7 @@ public class ExceptionHandlingDemoTest extends BaseTest {
     @Test
     public void testExecuteWithRetry() {
         // Navigate to the explore page
-        driver.get("https://mastodon.social/explore");
+        NavigationService.navigate(driver, "https://mastodon.social/explore");
 
         // Define an operation that might fail with specific exceptions
         Supplier<String> getHashtagsOperation = () -> {
@@ -125,7 +126,7 @@ public class ExceptionHandlingDemoTest extends BaseTest {
     @Test
     public void testFallbackValues() {
         // Navigate to a profile page
-        driver.get("https://mastodon.social/@Mastodon");
+        NavigationService.navigate(driver, "https://mastodon.social/@Mastodon");
 
         // Get text with fallback
         String bioText = ExceptionHandlingUtils.getTextWithFallback(
@@ -148,7 +149,7 @@ public class ExceptionHandlingDemoTest extends BaseTest {
         CircuitBreaker circuitBreaker = ExceptionHandlingUtils.createCircuitBreaker(3, 5000);
 
         // Navigate to the notifications page
-        driver.get("https://mastodon.social/notifications");
+        NavigationService.navigate(driver, "https://mastodon.social/notifications");
 
         // Define an operation that might fail
         Supplier<Boolean> checkNotificationsOperation = () -> {
@@ -183,7 +184,7 @@ public class ExceptionHandlingDemoTest extends BaseTest {
     @Test
     public void testCustomWaitConditions() {
         // Navigate to the home page
-        driver.get("https://mastodon.social/home");
+        NavigationService.navigate(driver, "https://mastodon.social/home");
 
         try {
             // Wait for a custom condition - page to contain specific text
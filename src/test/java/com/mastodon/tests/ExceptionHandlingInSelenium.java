@@ -28,6 +28,7 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.mastodon.utils.ExceptionHandlingUtils;
+import com.mastodon.utils.ResourceGovernor;
 
 import java.time.Duration;
 import java.util.function.Function;
@@ -41,15 +42,13 @@ public class ExceptionHandlingInSelenium {
 
     @BeforeMethod
     public void setUp() {
-        driver = new ChromeDriver();
+        driver = ResourceGovernor.openSession(ChromeDriver::new);
         driver.manage().window().maximize();
     }
 
     @AfterMethod
     public void tearDown() {
-        if (driver != null) {
-            driver.quit();
-        }
+        ResourceGovernor.closeSession(driver);
     }
 
     /**
@@ -40,8 +40,7 @@ public class HomePageTest extends BaseTest {
      */
     @Test(description = "Test creating a new post")
     public void testCreatePost() {
-        String postText = "Test post " + WebDriverUtils.generateRandomString(8, true, true);
-        homePage.createPost(postText);
+        String postText = homePage.createUniquePost("Test post");
 
         // Wait for post to be created
         WebDriverUtils.waitForPageLoad(driver, 10);
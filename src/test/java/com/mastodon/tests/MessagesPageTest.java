@@ -8,6 +8,7 @@ import com.mastodon.pages.HomePage;
 import com.mastodon.pages.LoginPage;
 import com.mastodon.pages.MessagesPage;
 import com.mastodon.utils.ConfigUtils;
+import com.mastodon.utils.UniqueContentGenerator;
 import com.mastodon.utils.WebDriverUtils;
 
 /**
@@ -66,8 +67,8 @@ public class MessagesPageTest extends BaseTest {
      */
     @Test(description = "Test sending a message", enabled = false)
     public void testSendMessage() {
-        // Generate a random message text
-        String messageText = "Test message " + WebDriverUtils.generateRandomString(5, true, false);
+        // Generate a message text no other run has sent
+        String messageText = UniqueContentGenerator.uniqueText("Test message");
 
         // Click new message button
         messagesPage.clickNewMessageButton();
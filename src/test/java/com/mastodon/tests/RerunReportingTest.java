@@ -0,0 +1,67 @@
+package com.mastodon.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openqa.selenium.WebDriverException;
+import org.testng.Assert;
+import org.testng.TestNG;
+import org.testng.annotations.Test;
+import org.testng.xml.XmlClass;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+
+import com.mastodon.utils.RerunOrchestrator;
+import com.mastodon.utils.TestNGCustomListener;
+
+/**
+ * Checks that tests rerun by RerunOrchestrator are reported like the rest of
+ * the suite, with the listeners registered in testng.xml order
+ * Runs a nested suite without a browser, so it does not extend BaseTest
+ */
+public class RerunReportingTest {
+
+    private static final File METRICS_FILE = new File("test-output/test-metrics.csv");
+
+    /**
+     * Fails with a browser error on its first run and passes on the rerun
+     */
+    public static class FlakyOnce {
+        private static final AtomicInteger runs = new AtomicInteger();
+
+        @Test
+        public void flakyOnce() {
+            if (runs.incrementAndGet() == 1) {
+                throw new WebDriverException("Simulated browser hiccup");
+            }
+        }
+    }
+
+    @Test(groups = { "framework" })
+    public void testRerunResultReachesMetricsCsv() throws IOException {
+        Files.deleteIfExists(METRICS_FILE.toPath());
+
+        XmlSuite suite = new XmlSuite();
+        suite.setName("Rerun Reporting Check");
+        suite.setListeners(Arrays.asList(RerunOrchestrator.class.getName(), TestNGCustomListener.class.getName()));
+        XmlTest test = new XmlTest(suite);
+        test.setName("Flaky");
+        test.setXmlClasses(Collections.singletonList(new XmlClass(FlakyOnce.class)));
+
+        TestNG testng = new TestNG(false);
+        testng.setXmlSuites(Collections.singletonList(suite));
+        testng.setOutputDirectory("test-output/rerun-reporting-check");
+        testng.run();
+
+        Assert.assertFalse(testng.hasFailure(), "The flaky test should pass on rerun");
+        Assert.assertTrue(METRICS_FILE.exists(), "Metrics CSV should be written");
+        List<String> lines = Files.readAllLines(METRICS_FILE.toPath());
+        Assert.assertTrue(lines.stream().anyMatch(line -> line.contains(",flakyOnce,TEST_SUCCESS,")),
+                "The rerun result should be in the metrics CSV: " + lines);
+    }
+}
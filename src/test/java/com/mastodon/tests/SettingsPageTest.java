@@ -101,7 +101,7 @@ public class SettingsPageTest extends BaseTest {
 
         // Update display name
         String newDisplayName = "Test User " + WebDriverUtils.generateRandomString(5, true, false);
-        profileSettingsPage.enterDisplayName(newDisplayName);
+        profileSettingsPage.updateProfile(newDisplayName, null);
 
         // Save profile settings
         profileSettingsPage.saveProfileSettings();
@@ -14,6 +14,8 @@ import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import com.mastodon.utils.ResourceGovernor;
+
 import java.time.Duration;
 import java.util.function.Function;
 
@@ -22,7 +24,7 @@ public class WebDriverAndElementMethodsTest {
 
     @BeforeClass
     public void setUp() {
-        driver = new ChromeDriver();
+        driver = ResourceGovernor.openSession(ChromeDriver::new);
         driver.get("https://mastodon.social/home");
     }
 
@@ -249,8 +251,6 @@ public class WebDriverAndElementMethodsTest {
 
     @AfterClass
     public void tearDown() {
-        if (driver != null) {
-            driver.quit();
-        }
+        ResourceGovernor.closeSession(driver);
     }
 }
\ No newline at end of file
@@ -11,6 +11,7 @@ import org.testng.annotations.Test;
 import com.mastodon.pages.HomePage;
 import com.mastodon.pages.LoginPage;
 import com.mastodon.utils.ConfigUtils;
+import com.mastodon.utils.ResourceGovernor;
 
 public class WindowHandlingTests {
     private WebDriver driver;
@@ -20,7 +21,7 @@ public class WindowHandlingTests {
 
     @BeforeClass
     public void setUp() {
-        driver = new ChromeDriver();
+        driver = ResourceGovernor.openSession(ChromeDriver::new);
         loginPage = new LoginPage(driver);
         homePage = loginPage.login(ConfigUtils.getMastodonEmail(), ConfigUtils.getMastodonPassword());
         parentWindowHandle = driver.getWindowHandle();
@@ -71,6 +72,6 @@ public class WindowHandlingTests {
 
     @AfterClass
     public void tearDown() {
-        driver.quit();
+        ResourceGovernor.closeSession(driver);
     }
 }
\ No newline at end of file
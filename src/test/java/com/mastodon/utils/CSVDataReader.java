@@ -1,14 +1,23 @@
 package com.mastodon.utils;
 
 import java.io.*;
+import java.nio.charset.Charset;
 import java.util.*;
 
 /**
  * Utility class for reading CSV files for test data
  * Provides lightweight data source for data-driven tests
+ * The file is parsed once per process and shared through TestDataCache until
+ * it changes on disk, so readers on any thread read rows and cells without
+ * touching the file again; across runs the parsed table is kept as a
+ * DataSnapshot under target/. Parsing follows RFC 4180
+ * (see CsvStreamParser), so quoted fields may span lines
  */
 public class CSVDataReader {
 
+    private static final long IN_MEMORY_LIMIT_BYTES = Long.parseLong(
+            ConfigUtils.getProperty("csv.inMemoryLimitMb", "64")) * 1024 * 1024;
+
     private String filePath;
     private String delimiter;
 
@@ -40,29 +49,13 @@ public class CSVDataReader {
      * @return 2D array of data
      */
     public String[][] getAllData(boolean includeHeaders) {
-        List<String[]> dataList = new ArrayList<>();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            boolean isFirstLine = true;
-
-            while ((line = reader.readLine()) != null) {
-                if (!includeHeaders && isFirstLine) {
-                    isFirstLine = false;
-                    continue; // Skip header row
-                }
-
-                String[] rowData = parseCsvLine(line);
-                dataList.add(rowData);
-                isFirstLine = false;
-            }
-        } catch (IOException e) {
-            System.err.println("Error reading CSV file: " + e.getMessage());
-            return new String[0][0];
+        Source source = source();
+        int first = includeHeaders ? 0 : Math.min(1, source.recordCount());
+        String[][] data = new String[source.recordCount() - first][];
+        for (int i = first; i < source.recordCount(); i++) {
+            data[i - first] = source.record(i);
         }
-
-        // Convert List to 2D array
-        return dataList.toArray(new String[dataList.size()][]);
+        return data;
     }
 
     /**
@@ -71,29 +64,19 @@ public class CSVDataReader {
      * @return List of maps representing rows
      */
     public List<Map<String, String>> getDataAsMapList() {
+        Source source = source();
+        String[] headers = source.headers();
         List<Map<String, String>> dataList = new ArrayList<>();
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String headerLine = reader.readLine();
-            if (headerLine == null) {
-                return dataList; // Empty file
-            }
-
-            String[] headers = parseCsvLine(headerLine);
-            String line;
+        for (int row = 1; row < source.recordCount(); row++) {
+            String[] rowData = source.record(row);
+            Map<String, String> rowMap = new HashMap<>();
 
-            while ((line = reader.readLine()) != null) {
-                String[] rowData = parseCsvLine(line);
-                Map<String, String> rowMap = new HashMap<>();
-
-                for (int i = 0; i < headers.length && i < rowData.length; i++) {
-                    rowMap.put(headers[i].trim(), rowData[i].trim());
-                }
-
-                dataList.add(rowMap);
+            for (int i = 0; i < headers.length && i < rowData.length; i++) {
+                rowMap.put(headers[i], rowData[i].trim());
             }
-        } catch (IOException e) {
-            System.err.println("Error reading CSV file as map list: " + e.getMessage());
+
+            dataList.add(rowMap);
         }
 
         return dataList;
@@ -107,25 +90,12 @@ public class CSVDataReader {
      * @return Array of values for the specified row
      */
     public String[] getRowData(int rowIndex, boolean skipHeader) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            int currentIndex = 0;
-
-            if (skipHeader) {
-                reader.readLine(); // Skip header
-            }
-
-            while ((line = reader.readLine()) != null) {
-                if (currentIndex == rowIndex) {
-                    return parseCsvLine(line);
-                }
-                currentIndex++;
-            }
-        } catch (IOException e) {
-            System.err.println("Error reading row data: " + e.getMessage());
+        Source source = source();
+        int index = skipHeader ? rowIndex + 1 : rowIndex;
+        if (rowIndex < 0 || index >= source.recordCount()) {
+            return new String[0];
         }
-
-        return new String[0];
+        return source.record(index);
     }
 
     /**
@@ -137,11 +107,13 @@ public class CSVDataReader {
      * @return Cell value as string
      */
     public String getCellData(int rowIndex, int columnIndex, boolean skipHeader) {
-        String[] rowData = getRowData(rowIndex, skipHeader);
-        if (rowData.length > columnIndex) {
-            return rowData[columnIndex].trim();
+        Source source = source();
+        int index = skipHeader ? rowIndex + 1 : rowIndex;
+        if (rowIndex < 0 || index >= source.recordCount()) {
+            return "";
         }
-        return "";
+        String value = source.value(index, columnIndex);
+        return value != null ? value.trim() : "";
     }
 
     /**
@@ -152,45 +124,12 @@ public class CSVDataReader {
      * @return Cell value as string
      */
     public String getCellDataByColumnName(int rowIndex, String columnName) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String headerLine = reader.readLine();
-            if (headerLine == null) {
-                return "";
-            }
-
-            String[] headers = parseCsvLine(headerLine);
-            int columnIndex = -1;
-
-            // Find column index
-            for (int i = 0; i < headers.length; i++) {
-                if (headers[i].trim().equals(columnName)) {
-                    columnIndex = i;
-                    break;
-                }
-            }
-
-            if (columnIndex == -1) {
-                return ""; // Column not found
-            }
-
-            // Read to the specified row
-            String line;
-            int currentIndex = 0;
-            while ((line = reader.readLine()) != null) {
-                if (currentIndex == rowIndex) {
-                    String[] rowData = parseCsvLine(line);
-                    if (rowData.length > columnIndex) {
-                        return rowData[columnIndex].trim();
-                    }
-                    break;
-                }
-                currentIndex++;
-            }
-        } catch (IOException e) {
-            System.err.println("Error reading cell data by column name: " + e.getMessage());
+        Source source = source();
+        int columnIndex = source.columnIndex(columnName);
+        if (columnIndex == -1) {
+            return ""; // Column not found
         }
-
-        return "";
+        return getCellData(rowIndex, columnIndex, true);
     }
 
     /**
@@ -200,16 +139,9 @@ public class CSVDataReader {
      * @return Number of rows
      */
     public int getRowCount(boolean includeHeader) {
-        int count = 0;
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            while (reader.readLine() != null) {
-                count++;
-            }
-            if (!includeHeader && count > 0) {
-                count--; // Subtract header row
-            }
-        } catch (IOException e) {
-            System.err.println("Error getting row count: " + e.getMessage());
+        int count = source().recordCount();
+        if (!includeHeader && count > 0) {
+            count--; // Subtract header row
         }
         return count;
     }
@@ -220,15 +152,7 @@ public class CSVDataReader {
      * @return Number of columns
      */
     public int getColumnCount() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String headerLine = reader.readLine();
-            if (headerLine != null) {
-                return parseCsvLine(headerLine).length;
-            }
-        } catch (IOException e) {
-            System.err.println("Error getting column count: " + e.getMessage());
-        }
-        return 0;
+        return source().headers().length;
     }
 
     /**
@@ -237,19 +161,7 @@ public class CSVDataReader {
      * @return Array of column headers
      */
     public String[] getHeaders() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String headerLine = reader.readLine();
-            if (headerLine != null) {
-                String[] headers = parseCsvLine(headerLine);
-                for (int i = 0; i < headers.length; i++) {
-                    headers[i] = headers[i].trim();
-                }
-                return headers;
-            }
-        } catch (IOException e) {
-            System.err.println("Error getting headers: " + e.getMessage());
-        }
-        return new String[0];
+        return source().headers();
     }
 
     /**
@@ -263,18 +175,17 @@ public class CSVDataReader {
 
         try (FileInputStream fis = new FileInputStream(filePath);
                 InputStreamReader isr = new InputStreamReader(fis);
-                BufferedReader reader = new BufferedReader(isr)) {
+                CsvStreamParser parser = newParser(isr)) {
 
-            String line;
+            String[] rowData;
             boolean isFirstLine = true;
 
-            while ((line = reader.readLine()) != null) {
+            while ((rowData = parser.next()) != null) {
                 if (!includeHeaders && isFirstLine) {
                     isFirstLine = false;
                     continue; // Skip header row
                 }
 
-                String[] rowData = parseCsvLine(line);
                 dataList.add(rowData);
                 isFirstLine = false;
             }
@@ -287,41 +198,297 @@ public class CSVDataReader {
     }
 
     /**
-     * Parses a CSV line handling quoted values and escaped quotes
-     * 
-     * @param line CSV line to parse
-     * @return Array of parsed values
+     * Iterates over the rows of the file, for TestNG data providers returning
+     * Iterator&lt;Object[]&gt;
+     * Files up to csv.inMemoryLimitMb are served from the shared parsed table.
+     * Larger files are streamed without holding them in memory: the file is
+     * read as the iterator advances and closed when it is exhausted
+     *
+     * @param includeHeaders Whether to include header row
+     * @return Iterator over the raw rows
      */
-    private String[] parseCsvLine(String line) {
-        List<String> result = new ArrayList<>();
-        boolean inQuotes = false;
-        StringBuilder currentField = new StringBuilder();
-
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-
-            if (c == '"') {
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    // Escaped quote
-                    currentField.append('"');
-                    i++; // Skip next quote
-                } else {
-                    // Toggle quote state
-                    inQuotes = !inQuotes;
+    public Iterator<String[]> iterateRows(boolean includeHeaders) {
+        if (new File(filePath).length() <= IN_MEMORY_LIMIT_BYTES) {
+            Source source = source();
+            return new Iterator<String[]>() {
+                private int index = includeHeaders ? 0 : 1;
+
+                @Override
+                public boolean hasNext() {
+                    return index < source.recordCount();
                 }
-            } else if (c == delimiter.charAt(0) && !inQuotes) {
-                // Field separator
-                result.add(currentField.toString());
-                currentField = new StringBuilder();
-            } else {
-                currentField.append(c);
+
+                @Override
+                public String[] next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return source.record(index++);
+                }
+            };
+        }
+
+        CsvStreamParser parser;
+        try {
+            parser = newParser(new FileReader(filePath));
+        } catch (IOException e) {
+            System.err.println("Error reading CSV file: " + e.getMessage());
+            return Collections.emptyIterator();
+        }
+
+        Iterator<String[]> rows = parser.iterator();
+        if (!includeHeaders && rows.hasNext()) {
+            rows.next(); // Skip header row
+        }
+        return new Iterator<String[]>() {
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = rows.hasNext();
+                if (!hasNext) {
+                    try {
+                        parser.close();
+                    } catch (IOException e) {
+                        System.err.println("Error closing CSV file: " + e.getMessage());
+                    }
+                }
+                return hasNext;
+            }
+
+            @Override
+            public String[] next() {
+                return rows.next();
+            }
+        };
+    }
+
+    /**
+     * Streams the data rows as maps keyed by the trimmed column headers,
+     * with the same values as getDataAsMapList
+     *
+     * @return Iterator over the rows as maps
+     */
+    public Iterator<Map<String, String>> iterateMaps() {
+        Iterator<String[]> rows = iterateRows(true);
+        String[] headers = rows.hasNext() ? DataTable.trimmed(rows.next()) : new String[0];
+        return new Iterator<Map<String, String>>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public Map<String, String> next() {
+                String[] rowData = rows.next();
+                Map<String, String> rowMap = new HashMap<>();
+                for (int i = 0; i < headers.length && i < rowData.length; i++) {
+                    rowMap.put(headers[i], rowData[i].trim());
+                }
+                return rowMap;
+            }
+        };
+    }
+
+    /**
+     * Binds the data rows onto objects of the given type (see RowBinder), so
+     * values are looked up and converted once instead of through a map per row
+     *
+     * @param type Row type
+     * @return Bound rows
+     * @throws IllegalArgumentException if a column is missing or a value cannot be converted
+     */
+    public <T> List<T> getDataAs(Class<T> type) {
+        List<T> dataList = new ArrayList<>();
+        iterateAs(type).forEachRemaining(dataList::add);
+        return dataList;
+    }
+
+    /**
+     * Binds the data rows onto objects of the given type as the iterator advances
+     *
+     * @param type Row type
+     * @return Iterator over the bound rows
+     * @throws IllegalArgumentException if a column is missing from a non-empty source
+     */
+    public <T> Iterator<T> iterateAs(Class<T> type) {
+        Iterator<String[]> rows = iterateRows(true);
+        if (!rows.hasNext()) {
+            return Collections.emptyIterator();
+        }
+        return RowBinder.of(type, rows.next()).bindAll(rows);
+    }
+
+    private CsvStreamParser newParser(Reader reader) {
+        return new CsvStreamParser(reader, delimiter.charAt(0), '"');
+    }
+
+    /**
+     * Gets the parsed file from the shared cache, parsing it again only when it changed on disk
+     * Files up to csv.inMemoryLimitMb are held as a DataTable; larger files
+     * are only indexed by row offset and rows are read on demand
+     */
+    private Source source() {
+        try {
+            return TestDataCache.get(filePath, "csv:" + delimiter, file -> {
+                if (file.length() > IN_MEMORY_LIMIT_BYTES) {
+                    return new IndexedSource(file);
+                }
+                return new TableSource(DataSnapshot.load(file, "csv:" + delimiter, source -> parseAll()));
+            });
+        } catch (IOException e) {
+            System.err.println("Error reading CSV file: " + e.getMessage());
+            // Not cached, so the next call tries again
+            return new TableSource(new DataTable(new ArrayList<>()));
+        }
+    }
+
+    private DataTable parseAll() throws IOException {
+        List<String[]> records = new ArrayList<>();
+        try (CsvStreamParser parser = newParser(new FileReader(filePath))) {
+            String[] record;
+            while ((record = parser.next()) != null) {
+                records.add(record);
+            }
+        }
+        return new DataTable(records);
+    }
+
+    /**
+     * Parsed state of the file at one modification time; immutable once constructed
+     */
+    private abstract static class Source {
+        abstract int recordCount();
+
+        abstract String[] record(int index);
+
+        abstract String value(int index, int columnIndex);
+
+        abstract String[] headers();
+
+        abstract int columnIndex(String columnName);
+    }
+
+    private static class TableSource extends Source {
+        private final DataTable table;
+
+        TableSource(DataTable table) {
+            this.table = table;
+        }
+
+        int recordCount() {
+            return table.getRecordCount();
+        }
+
+        String[] record(int index) {
+            return table.getRecord(index);
+        }
+
+        String value(int index, int columnIndex) {
+            return table.getValue(index, columnIndex);
+        }
+
+        String[] headers() {
+            return table.getHeaders();
+        }
+
+        int columnIndex(String columnName) {
+            return table.getColumnIndex(columnName);
+        }
+    }
+
+    /**
+     * Byte offset of every record, so any row of a large file is one seek away
+     */
+    private class IndexedSource extends Source {
+        private final File file;
+        private long[] offsets = new long[1024];
+        private int count;
+        private final String[] headers;
+        private final Map<String, Integer> columnIndexes;
+
+        IndexedSource(File file) throws IOException {
+            this.file = file;
+            indexRecords();
+            this.headers = count > 0 ? DataTable.trimmed(record(0)) : new String[0];
+            this.columnIndexes = DataTable.indexColumns(headers);
+        }
+
+        /**
+         * Records where each record starts, with the same record ends as CsvStreamParser:
+         * line breaks outside quotes (the quote is a single byte in ASCII compatible charsets)
+         */
+        private void indexRecords() throws IOException {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+                long position = 0;
+                boolean lineStart = true;
+                boolean afterCarriageReturn = false;
+                boolean inQuotes = false;
+                int b;
+                while ((b = in.read()) != -1) {
+                    if (afterCarriageReturn && b == '\n') {
+                        afterCarriageReturn = false;
+                        position++;
+                        continue;
+                    }
+                    afterCarriageReturn = false;
+                    if (lineStart) {
+                        addOffset(position);
+                        lineStart = false;
+                    }
+                    if (b == '"') {
+                        inQuotes = !inQuotes;
+                    } else if (!inQuotes && (b == '\n' || b == '\r')) {
+                        lineStart = true;
+                        afterCarriageReturn = b == '\r';
+                    }
+                    position++;
+                }
+                addOffset(position);
+                count--;
             }
         }
 
-        // Add the last field
-        result.add(currentField.toString());
+        private void addOffset(long offset) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = offset;
+        }
+
+        int recordCount() {
+            return count;
+        }
 
-        return result.toArray(new String[result.size()]);
+        String[] record(int index) {
+            long start = offsets[index];
+            byte[] bytes = new byte[(int) (offsets[index + 1] - start)];
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                raf.seek(start);
+                raf.readFully(bytes);
+            } catch (IOException e) {
+                System.err.println("Error reading row data: " + e.getMessage());
+                return new String[0];
+            }
+            try (CsvStreamParser parser = newParser(new StringReader(new String(bytes, Charset.defaultCharset())))) {
+                String[] record = parser.next();
+                return record != null ? record : new String[]{""};
+            } catch (IOException e) {
+                System.err.println("Error parsing row data: " + e.getMessage());
+                return new String[0];
+            }
+        }
+
+        String value(int index, int columnIndex) {
+            String[] record = record(index);
+            return columnIndex >= 0 && columnIndex < record.length ? record[columnIndex] : null;
+        }
+
+        String[] headers() {
+            return headers.clone();
+        }
+
+        int columnIndex(String columnName) {
+            return columnIndexes.getOrDefault(columnName, -1);
+        }
     }
 
     /**
@@ -0,0 +1,82 @@
+package com.mastodon.utils;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Prints suite, context and test banners for TestNGCustomListener
+ * Runs on the event bus thread so console I/O no longer delays the tests
+ * Each test gets a single result line; its detailed log lines are captured
+ * by TestLog and only written to a file when it fails
+ */
+public class ConsoleEventConsumer implements TestEventConsumer {
+
+    private static final DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
+    @Override
+    public void onEvent(TestEvent event) {
+        switch (event.getType()) {
+            case SUITE_START:
+                System.out.println("\n" + "=".repeat(80));
+                System.out.println("SUITE STARTED: " + event.getScopeName());
+                System.out.println("Start Time: " + format(event.getTimestampMillis()));
+                System.out.println("=".repeat(80));
+                break;
+            case SUITE_FINISH:
+                System.out.println("\n" + "=".repeat(80));
+                System.out.println("SUITE FINISHED: " + event.getScopeName());
+                System.out.println("End Time: " + format(event.getTimestampMillis()));
+                System.out.println("=".repeat(80));
+                break;
+            case CONTEXT_START:
+                System.out.println("\n" + "-".repeat(60));
+                System.out.println("TEST CONTEXT STARTED: " + event.getScopeName());
+                System.out.println("Start Time: " + format(event.getStartMillis()));
+                System.out.println("-".repeat(60));
+                break;
+            case CONTEXT_FINISH:
+                System.out.println("\n" + "-".repeat(60));
+                System.out.println("TEST CONTEXT FINISHED: " + event.getScopeName());
+                System.out.println("End Time: " + format(event.getEndMillis()));
+                System.out.println("Total Tests: " + event.getTotalCount());
+                System.out.println("Passed: " + event.getPassedCount());
+                System.out.println("Failed: " + event.getFailedCount());
+                System.out.println("Skipped: " + event.getSkippedCount());
+                System.out.println("-".repeat(60));
+                break;
+            case TEST_SUCCESS:
+                System.out.println("[TEST PASSED] " + event.getTestName() + " - Duration: "
+                        + event.getDurationMillis() + "ms");
+                break;
+            case TEST_FAILURE:
+                System.out.println("[TEST FAILED] " + event.getTestName() + " - Duration: "
+                        + event.getDurationMillis() + "ms");
+                System.out.println("Failure Reason: "
+                        + (event.getThrowable() != null ? event.getThrowable().getMessage() : "unknown"));
+                break;
+            case TEST_SKIPPED:
+                System.out.println("[TEST SKIPPED] " + event.getTestName());
+                if (event.getThrowable() != null) {
+                    System.out.println("Skip Reason: " + event.getThrowable().getMessage());
+                }
+                break;
+            case TEST_DEFERRED:
+                System.out.println("[TEST DEFERRED TO RERUN] " + event.getTestName() + " - Duration: "
+                        + event.getDurationMillis() + "ms");
+                System.out.println("Failure Reason: "
+                        + (event.getThrowable() != null ? event.getThrowable().getMessage() : "unknown"));
+                break;
+            case TEST_FAILED_WITHIN_PERCENTAGE:
+                System.out.println("[TEST FAILED BUT WITHIN SUCCESS PERCENTAGE] " + event.getTestName());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private String format(long epochMillis) {
+        return dateFormat.format(Instant.ofEpochMilli(epochMillis));
+    }
+}
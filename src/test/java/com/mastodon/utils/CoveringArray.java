@@ -0,0 +1,352 @@
+package com.mastodon.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Data provider decorator that replaces the cross product of parameter
+ * domains with a t-wise covering set
+ * Every combination of values of any t parameters (pairs by default) occurs
+ * in at least one generated row, which finds the faults caused by
+ * interactions of up to t parameters with a fraction of the rows. Domains are
+ * given as value lists or taken from the distinct values of CSV and Excel
+ * columns. Rows are built greedily: a candidate row is started from an
+ * uncovered combination of each parameter subset, every other parameter
+ * takes the value that covers the most new combinations, and the candidate
+ * covering the most is kept. Generation is deterministic, so reruns and
+ * shards see the same rows
+ */
+public class CoveringArray {
+
+    private final int strength;
+    private final List<String> names = new ArrayList<>();
+    private final List<List<String>> domains = new ArrayList<>();
+
+    /**
+     * Creates a generator covering all combinations of values of any {@code strength} parameters
+     *
+     * @param strength Interaction strength t, at least 1
+     */
+    public CoveringArray(int strength) {
+        if (strength < 1) {
+            throw new IllegalArgumentException("Strength must be at least 1: " + strength);
+        }
+        this.strength = strength;
+    }
+
+    /**
+     * Creates a generator covering all pairs of values
+     *
+     * @return Pairwise generator
+     */
+    public static CoveringArray pairwise() {
+        return new CoveringArray(2);
+    }
+
+    /**
+     * Adds a parameter with explicit values
+     *
+     * @param name   Parameter name
+     * @param values Distinct values
+     * @return This generator
+     */
+    public CoveringArray parameter(String name, String... values) {
+        return parameter(name, Arrays.asList(values));
+    }
+
+    /**
+     * Adds a parameter with explicit values; duplicates are dropped
+     *
+     * @param name   Parameter name
+     * @param values Values
+     * @return This generator
+     */
+    public CoveringArray parameter(String name, Collection<String> values) {
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("Parameter " + name + " has no values");
+        }
+        names.add(name);
+        domains.add(new ArrayList<>(new LinkedHashSet<>(values)));
+        return this;
+    }
+
+    /**
+     * Adds a parameter whose values are the distinct trimmed values of a CSV column
+     *
+     * @param reader     CSV file
+     * @param columnName Column header
+     * @return This generator
+     */
+    public CoveringArray column(CSVDataReader reader, String columnName) {
+        return column(columnName, reader.iterateRows(true));
+    }
+
+    /**
+     * Adds a parameter whose values are the distinct trimmed values of an Excel column
+     *
+     * @param reader     Excel file
+     * @param sheetName  Name of the sheet
+     * @param columnName Column header
+     * @return This generator
+     */
+    public CoveringArray column(ExcelDataReader reader, String sheetName, String columnName) {
+        return column(columnName, reader.iterateRows(sheetName, true));
+    }
+
+    private CoveringArray column(String columnName, Iterator<String[]> rows) {
+        int index = -1;
+        if (rows.hasNext()) {
+            String[] headers = rows.next();
+            for (int i = 0; i < headers.length && index == -1; i++) {
+                if (headers[i].trim().equals(columnName)) {
+                    index = i;
+                }
+            }
+        }
+        if (index == -1) {
+            throw new IllegalArgumentException("Column not found: " + columnName);
+        }
+
+        Set<String> values = new LinkedHashSet<>();
+        while (rows.hasNext()) {
+            String[] row = rows.next();
+            values.add(index < row.length ? row[index].trim() : "");
+        }
+        return parameter(columnName, values);
+    }
+
+    /**
+     * Gets the number of rows of the full cross product
+     *
+     * @return Product of the domain sizes, or Long.MAX_VALUE if it overflows
+     */
+    public long getFullProductSize() {
+        long size = 1;
+        for (List<String> domain : domains) {
+            try {
+                size = Math.multiplyExact(size, domain.size());
+            } catch (ArithmeticException e) {
+                return Long.MAX_VALUE;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Generates the covering set and prints the reduction against the full cross product
+     *
+     * @return Rows as parameter name to value, in parameter order
+     */
+    public List<Map<String, String>> generate() {
+        List<int[]> rows = generateIndexes();
+        List<Map<String, String>> result = new ArrayList<>(rows.size());
+        for (int[] row : rows) {
+            Map<String, String> values = new LinkedHashMap<>();
+            for (int i = 0; i < row.length; i++) {
+                values.put(names.get(i), domains.get(i).get(row[i]));
+            }
+            result.add(values);
+        }
+
+        long fullSize = getFullProductSize();
+        System.out.println(String.format("%d-wise covering set over %s: %d of %d combinations (%.1f%% fewer)",
+                Math.min(strength, names.size()), names, result.size(), fullSize,
+                fullSize == 0 ? 0.0 : 100.0 * (fullSize - result.size()) / fullSize));
+        return result;
+    }
+
+    /**
+     * Generates the covering set as data provider rows, one String argument per parameter in the order added
+     *
+     * @return Iterator over the test invocations
+     */
+    public Iterator<Object[]> asParameters() {
+        Iterator<Map<String, String>> rows = generate().iterator();
+        return new Iterator<Object[]>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public Object[] next() {
+                return rows.next().values().toArray();
+            }
+        };
+    }
+
+    private List<int[]> generateIndexes() {
+        List<int[]> rows = new ArrayList<>();
+        if (names.isEmpty()) {
+            return rows;
+        }
+
+        Generator generator = new Generator(Math.min(strength, names.size()));
+        while (generator.uncovered > 0) {
+            // Try one seed per parameter subset that is not fully covered and keep the row covering the most
+            int[] bestRow = null;
+            int bestGain = 0;
+            for (int s = 0; s < generator.subsets.size(); s++) {
+                int combination = firstUncovered(generator.covered[s]);
+                if (combination == -1) {
+                    continue;
+                }
+                int[] row = generator.buildRow(s, combination);
+                int gain = generator.newlyCovered(row);
+                if (gain > bestGain) {
+                    bestGain = gain;
+                    bestRow = row;
+                }
+            }
+            generator.cover(bestRow);
+            rows.add(bestRow);
+        }
+        return rows;
+    }
+
+    /**
+     * Coverage state while rows are generated: one bit set per t-subset of
+     * parameters, over all value combinations of the subset
+     */
+    private class Generator {
+        final int[] sizes;
+        final List<int[]> subsets = new ArrayList<>();
+        final List<List<Integer>> subsetsByParameter = new ArrayList<>();
+        final boolean[][] covered;
+        final Integer[] order;
+        final int[][] uses;
+        int uncovered;
+
+        Generator(int t) {
+            int parameterCount = names.size();
+            sizes = new int[parameterCount];
+            uses = new int[parameterCount][];
+            order = new Integer[parameterCount];
+            for (int i = 0; i < parameterCount; i++) {
+                sizes[i] = domains.get(i).size();
+                uses[i] = new int[sizes[i]];
+                order[i] = i;
+                subsetsByParameter.add(new ArrayList<>());
+            }
+            // Parameters with the largest domains are decided first, as they have the most to cover
+            Arrays.sort(order, (a, b) -> sizes[b] - sizes[a]);
+
+            subsets(parameterCount, t, 0, new int[t], 0, subsets);
+            covered = new boolean[subsets.size()][];
+            for (int s = 0; s < subsets.size(); s++) {
+                int combinations = 1;
+                for (int parameter : subsets.get(s)) {
+                    combinations *= sizes[parameter];
+                    subsetsByParameter.get(parameter).add(s);
+                }
+                covered[s] = new boolean[combinations];
+                uncovered += combinations;
+            }
+        }
+
+        /**
+         * Builds a row around an uncovered combination, giving every other
+         * parameter the value that completes the most uncovered combinations
+         */
+        int[] buildRow(int seedSubset, int combination) {
+            int[] row = new int[sizes.length];
+            Arrays.fill(row, -1);
+            int[] seedParameters = subsets.get(seedSubset);
+            for (int i = seedParameters.length - 1; i >= 0; i--) {
+                row[seedParameters[i]] = combination % sizes[seedParameters[i]];
+                combination /= sizes[seedParameters[i]];
+            }
+
+            for (int parameter : order) {
+                if (row[parameter] != -1) {
+                    continue;
+                }
+                int bestValue = 0;
+                int bestGain = -1;
+                for (int value = 0; value < sizes[parameter]; value++) {
+                    row[parameter] = value;
+                    int gain = 0;
+                    for (int s : subsetsByParameter.get(parameter)) {
+                        int index = index(subsets.get(s), row, sizes);
+                        if (index >= 0 && !covered[s][index]) {
+                            gain++;
+                        }
+                    }
+                    // Ties go to the value used least so far, which spreads values over the rows
+                    if (gain > bestGain || gain == bestGain && uses[parameter][value] < uses[parameter][bestValue]) {
+                        bestGain = gain;
+                        bestValue = value;
+                    }
+                }
+                row[parameter] = bestValue;
+            }
+            return row;
+        }
+
+        int newlyCovered(int[] row) {
+            int count = 0;
+            for (int s = 0; s < subsets.size(); s++) {
+                if (!covered[s][index(subsets.get(s), row, sizes)]) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        void cover(int[] row) {
+            for (int s = 0; s < subsets.size(); s++) {
+                int index = index(subsets.get(s), row, sizes);
+                if (!covered[s][index]) {
+                    covered[s][index] = true;
+                    uncovered--;
+                }
+            }
+            for (int i = 0; i < row.length; i++) {
+                uses[i][row[i]]++;
+            }
+        }
+    }
+
+    private static void subsets(int n, int t, int start, int[] current, int depth, List<int[]> result) {
+        if (depth == t) {
+            result.add(current.clone());
+            return;
+        }
+        for (int i = start; i <= n - (t - depth); i++) {
+            current[depth] = i;
+            subsets(n, t, i + 1, current, depth + 1, result);
+        }
+    }
+
+    /**
+     * Mixed-radix index of the values a row assigns to a subset of parameters
+     *
+     * @return Index, or -1 if the row does not assign all of them yet
+     */
+    private static int index(int[] subset, int[] row, int[] sizes) {
+        int index = 0;
+        for (int parameter : subset) {
+            if (row[parameter] == -1) {
+                return -1;
+            }
+            index = index * sizes[parameter] + row[parameter];
+        }
+        return index;
+    }
+
+    private static int firstUncovered(boolean[] covered) {
+        for (int i = 0; i < covered.length; i++) {
+            if (!covered[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
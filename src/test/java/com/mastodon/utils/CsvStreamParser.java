@@ -0,0 +1,179 @@
+package com.mastodon.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Streaming CSV parser following RFC 4180
+ * Fields may be quoted; quoted fields can contain the delimiter, line breaks
+ * and doubled quotes. Records end at LF, CR or CRLF outside quotes, and a
+ * final line break does not start an empty record. The input is read through
+ * one reusable char buffer, so memory use does not depend on the file size
+ */
+public class CsvStreamParser implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final char delimiter;
+    private final char quote;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder field = new StringBuilder();
+    private final List<String> fields = new ArrayList<>();
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+
+    /**
+     * Creates a parser with comma delimiter and double quotes
+     *
+     * @param reader Input, closed with the parser
+     */
+    public CsvStreamParser(Reader reader) {
+        this(reader, ',', '"');
+    }
+
+    /**
+     * Creates a parser with custom delimiter and quote characters
+     *
+     * @param reader    Input, closed with the parser
+     * @param delimiter Field delimiter, e.g. ',', ';', '|' or '\t'
+     * @param quote     Quote character
+     */
+    public CsvStreamParser(Reader reader, char delimiter, char quote) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+        this.quote = quote;
+    }
+
+    /**
+     * Parses the next record
+     *
+     * @return Field values, or null at the end of the input
+     */
+    public String[] next() throws IOException {
+        if (!fill()) {
+            return null;
+        }
+
+        fields.clear();
+        field.setLength(0);
+        boolean inQuotes = false;
+        while (fill()) {
+            if (inQuotes) {
+                // Copy the run up to the next quote in one go
+                int start = position;
+                while (position < limit && buffer[position] != quote) {
+                    position++;
+                }
+                field.append(buffer, start, position - start);
+                if (position == limit) {
+                    continue;
+                }
+                position++;
+                if (fill() && buffer[position] == quote) {
+                    // Doubled quote inside a quoted field
+                    field.append(quote);
+                    position++;
+                } else {
+                    inQuotes = false;
+                }
+                continue;
+            }
+
+            int start = position;
+            while (position < limit) {
+                char c = buffer[position];
+                if (c == delimiter || c == quote || c == '\n' || c == '\r') {
+                    break;
+                }
+                position++;
+            }
+            field.append(buffer, start, position - start);
+            if (position == limit) {
+                continue;
+            }
+
+            char c = buffer[position++];
+            if (c == quote) {
+                inQuotes = true;
+            } else if (c == delimiter) {
+                endField();
+            } else {
+                if (c == '\r' && fill() && buffer[position] == '\n') {
+                    position++;
+                }
+                break;
+            }
+        }
+        endField();
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * Iterates over the remaining records; I/O errors are thrown as UncheckedIOException
+     *
+     * @return Iterator over the records
+     */
+    public Iterator<String[]> iterator() {
+        return new Iterator<String[]>() {
+            private String[] next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = CsvStreamParser.this.next();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public String[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String[] record = next;
+                next = null;
+                return record;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void endField() {
+        fields.add(field.toString());
+        field.setLength(0);
+    }
+
+    /**
+     * Makes sure there is at least one unread char in the buffer
+     *
+     * @return false at the end of the input
+     */
+    private boolean fill() throws IOException {
+        while (position == limit && !endOfInput) {
+            int read = reader.read(buffer, 0, buffer.length);
+            if (read == -1) {
+                endOfInput = true;
+            } else {
+                position = 0;
+                limit = read;
+            }
+        }
+        return position < limit;
+    }
+}
@@ -0,0 +1,94 @@
+package com.mastodon.utils;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streaming CSV writer following RFC 4180, the counterpart of CsvStreamParser
+ * Fields containing the delimiter, the quote or a line break are quoted with
+ * inner quotes doubled; records end with CRLF. Records go straight to a
+ * buffered writer, so memory use does not depend on the number of rows
+ */
+public class CsvStreamWriter implements Closeable, Flushable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer writer;
+    private final char delimiter;
+    private final char quote;
+
+    /**
+     * Creates a writer with comma delimiter and double quotes
+     *
+     * @param writer Output, closed with the writer
+     */
+    public CsvStreamWriter(Writer writer) {
+        this(writer, ',', '"');
+    }
+
+    /**
+     * Creates a writer with custom delimiter and quote characters
+     *
+     * @param writer    Output, closed with the writer
+     * @param delimiter Field delimiter, e.g. ',', ';', '|' or '\t'
+     * @param quote     Quote character
+     */
+    public CsvStreamWriter(Writer writer, char delimiter, char quote) {
+        this.writer = new BufferedWriter(writer, BUFFER_SIZE);
+        this.delimiter = delimiter;
+        this.quote = quote;
+    }
+
+    /**
+     * Writes one record
+     *
+     * @param fields Field values; null is written as an empty field
+     */
+    public void writeRecord(String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(delimiter);
+            }
+            writeField(fields[i] != null ? fields[i] : "");
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeField(String field) throws IOException {
+        boolean needsQuotes = false;
+        for (int i = 0; i < field.length() && !needsQuotes; i++) {
+            char c = field.charAt(i);
+            needsQuotes = c == delimiter || c == quote || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            writer.write(field);
+            return;
+        }
+
+        writer.write(quote);
+        int start = 0;
+        for (int i = 0; i < field.length(); i++) {
+            if (field.charAt(i) == quote) {
+                // Doubled quote inside a quoted field
+                writer.write(field, start, i + 1 - start);
+                writer.write(quote);
+                start = i + 1;
+            }
+        }
+        writer.write(field, start, field.length() - start);
+        writer.write(quote);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
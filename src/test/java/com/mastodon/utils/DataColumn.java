@@ -0,0 +1,19 @@
+package com.mastodon.utils;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Names the data column bound to a field by RowBinder, when it differs from the field name
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface DataColumn {
+
+    /**
+     * @return Column header, compared after trimming
+     */
+    String value();
+}
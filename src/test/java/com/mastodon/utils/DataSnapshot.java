@@ -0,0 +1,252 @@
+package com.mastodon.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshots of parsed test data tables under target/
+ * A snapshot is named after the SHA-256 of the source file content and the
+ * part that was parsed (a sheet, or a CSV delimiter), so a fresh snapshot is
+ * found by hashing the source and an edited source simply has no snapshot
+ * yet. Loading one maps the file and decodes it without POI or the CSV parser.
+ * Layout (big-endian ints): magic, version, record count, cell count, string
+ * count, row offsets into the cells, one string id per cell (-1 for null),
+ * byte offsets of the strings, then the UTF-8 dictionary of distinct strings
+ *
+ * Run main to build snapshots for every CSV and XLSX file ahead of a suite:
+ * mvn test-compile exec:java -Psnapshot-test-data
+ */
+public final class DataSnapshot {
+
+    public static final String SNAPSHOT_DIR = "target/test-data-snapshots";
+
+    private static final int MAGIC = 0x4D544454; // "MTDT"
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 5;
+    private static final boolean ENABLED = Boolean.parseBoolean(
+            ConfigUtils.getProperty("testdata.snapshots", "true"));
+
+    private DataSnapshot() {
+    }
+
+    /**
+     * Loads the snapshot for the current content of a source file, deriving
+     * it with the parser first if there is none
+     *
+     * @param source Source file
+     * @param part   What is parsed, e.g. "csv:," or "xlsx:" + sheet name
+     * @param parser Parses the source when there is no fresh snapshot
+     * @return Parsed table
+     * @throws IOException if the source cannot be read or parsed
+     */
+    public static DataTable load(File source, String part, TestDataCache.Loader<DataTable> parser)
+            throws IOException {
+        if (!ENABLED) {
+            return parser.load(source);
+        }
+
+        Path snapshot = Paths.get(SNAPSHOT_DIR, hash(source, part) + ".tbl");
+        if (Files.isRegularFile(snapshot)) {
+            try {
+                return read(snapshot);
+            } catch (IOException e) {
+                System.err.println("Ignoring unreadable test data snapshot " + snapshot + ": " + e.getMessage());
+            }
+        }
+
+        DataTable table = parser.load(source);
+        try {
+            write(table, snapshot);
+        } catch (IOException e) {
+            System.err.println("Could not write test data snapshot " + snapshot + ": " + e.getMessage());
+        }
+        return table;
+    }
+
+    /**
+     * Hashes the source content together with the part and the format version
+     */
+    private static String hash(File source, String part) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(source.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        digest.update((VERSION + "\0" + part).getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static DataTable read(Path snapshot) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            IntBuffer ints = buffer.asIntBuffer();
+            if (ints.get() != MAGIC || ints.get() != VERSION) {
+                throw new IOException("not a version " + VERSION + " snapshot");
+            }
+            int recordCount = ints.get();
+            int cellCount = ints.get();
+            int stringCount = ints.get();
+            long tableInts = (long) HEADER_INTS + recordCount + 1 + cellCount + stringCount + 1;
+            if (recordCount < 0 || cellCount < 0 || stringCount < 0 || tableInts * Integer.BYTES > buffer.capacity()) {
+                throw new IOException("truncated or corrupt snapshot");
+            }
+
+            int[] rowOffsets = new int[recordCount + 1];
+            ints.get(rowOffsets);
+            int[] cells = new int[cellCount];
+            ints.get(cells);
+            int[] stringOffsets = new int[stringCount + 1];
+            ints.get(stringOffsets);
+
+            // Each distinct string is decoded once and shared by all its cells
+            ByteBuffer dictionary = buffer.duplicate();
+            dictionary.position((int) tableInts * Integer.BYTES);
+            String[] strings = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                byte[] bytes = new byte[stringOffsets[i + 1] - stringOffsets[i]];
+                dictionary.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            List<String[]> records = new ArrayList<>(recordCount);
+            for (int row = 0; row < recordCount; row++) {
+                String[] record = new String[rowOffsets[row + 1] - rowOffsets[row]];
+                for (int i = 0; i < record.length; i++) {
+                    int id = cells[rowOffsets[row] + i];
+                    record[i] = id >= 0 ? strings[id] : null;
+                }
+                records.add(record);
+            }
+            return new DataTable(records);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                | NegativeArraySizeException e) {
+            throw new IOException("truncated or corrupt snapshot", e);
+        }
+    }
+
+    /**
+     * Writes the snapshot next to its final name and moves it into place, so
+     * concurrent processes never see a partly written file
+     */
+    private static void write(DataTable table, Path snapshot) throws IOException {
+        Map<String, Integer> ids = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int recordCount = table.getRecordCount();
+        int[] rowOffsets = new int[recordCount + 1];
+        List<String[]> records = new ArrayList<>(recordCount);
+        for (int row = 0; row < recordCount; row++) {
+            String[] record = table.getRecord(row);
+            records.add(record);
+            rowOffsets[row + 1] = rowOffsets[row] + record.length;
+            for (String value : record) {
+                if (value != null && !ids.containsKey(value)) {
+                    ids.put(value, strings.size());
+                    strings.add(value.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        Files.createDirectories(snapshot.getParent());
+        Path temp = Files.createTempFile(snapshot.getParent(), snapshot.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream file = Files.newOutputStream(temp);
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(recordCount);
+                out.writeInt(rowOffsets[recordCount]);
+                out.writeInt(strings.size());
+                for (int offset : rowOffsets) {
+                    out.writeInt(offset);
+                }
+                for (String[] record : records) {
+                    for (String value : record) {
+                        out.writeInt(value != null ? ids.get(value) : -1);
+                    }
+                }
+                int offset = 0;
+                out.writeInt(offset);
+                for (byte[] bytes : strings) {
+                    offset += bytes.length;
+                    out.writeInt(offset);
+                }
+                for (byte[] bytes : strings) {
+                    out.write(bytes);
+                }
+            }
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Builds the snapshots of every CSV file and XLSX sheet in the given directories
+     *
+     * @param args Directories to scan; src/test/resources/testdata by default
+     */
+    public static void main(String[] args) throws IOException {
+        String[] dirs = args.length > 0 ? args : new String[] { "src/test/resources/testdata" };
+        for (String dir : dirs) {
+            File[] files = new File(dir).listFiles();
+            if (files == null) {
+                System.err.println("Not a directory: " + dir);
+                continue;
+            }
+            for (File file : files) {
+                String name = file.getName().toLowerCase();
+                try {
+                    if (name.endsWith(".csv")) {
+                        new CSVDataReader(file.getPath()).getRowCount(true);
+                        System.out.println("Prepared " + file);
+                    } else if (name.endsWith(".xlsx")) {
+                        ExcelDataReader reader = new ExcelDataReader(file.getPath());
+                        for (String sheetName : XlsxStreamReader.getSheetNames(file.getPath())) {
+                            reader.getRowCount(sheetName);
+                            System.out.println("Prepared " + file + " [" + sheetName + "]");
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Skipping " + file + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+}
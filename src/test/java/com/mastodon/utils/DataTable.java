@@ -0,0 +1,109 @@
+package com.mastodon.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, fully parsed test data table
+ * Record 0 is the header row; the column name to index map is computed once,
+ * so any cell can be read in constant time. Cells missing from the source
+ * (e.g. absent Excel cells) may be null
+ */
+public final class DataTable {
+
+    private final List<String[]> records;
+    private final String[] headers;
+    private final Map<String, Integer> columnIndexes;
+
+    /**
+     * Creates a table from parsed records; the records are copied
+     *
+     * @param records All rows of the source, header row first
+     */
+    public DataTable(List<String[]> records) {
+        List<String[]> copy = new ArrayList<>(records.size());
+        for (String[] record : records) {
+            copy.add(record.clone());
+        }
+        this.records = Collections.unmodifiableList(copy);
+        this.headers = records.isEmpty() ? new String[0] : trimmed(records.get(0));
+        this.columnIndexes = indexColumns(headers);
+    }
+
+    /**
+     * Maps trimmed column names to their index; the first occurrence wins, as in a linear search
+     *
+     * @param headers Trimmed header values
+     * @return Column name to index
+     */
+    static Map<String, Integer> indexColumns(String[] headers) {
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < headers.length; i++) {
+            if (headers[i] != null) {
+                indexes.putIfAbsent(headers[i], i);
+            }
+        }
+        return Collections.unmodifiableMap(indexes);
+    }
+
+    static String[] trimmed(String[] values) {
+        String[] result = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i] != null ? values[i].trim() : null;
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of rows, header included
+     *
+     * @return Record count
+     */
+    public int getRecordCount() {
+        return records.size();
+    }
+
+    /**
+     * Gets a row as parsed, without trimming
+     *
+     * @param index Record index, 0 being the header row
+     * @return Copy of the row values
+     */
+    public String[] getRecord(int index) {
+        return records.get(index).clone();
+    }
+
+    /**
+     * Gets a cell value without copying the row
+     *
+     * @param index       Record index, 0 being the header row
+     * @param columnIndex Column index
+     * @return Cell value as parsed, or null if the row has no such column
+     */
+    public String getValue(int index, int columnIndex) {
+        String[] record = records.get(index);
+        return columnIndex >= 0 && columnIndex < record.length ? record[columnIndex] : null;
+    }
+
+    /**
+     * Gets the trimmed header values
+     *
+     * @return Copy of the headers
+     */
+    public String[] getHeaders() {
+        return headers.clone();
+    }
+
+    /**
+     * Gets the index of a column
+     *
+     * @param columnName Trimmed column name
+     * @return Column index, or -1 if there is no such column
+     */
+    public int getColumnIndex(String columnName) {
+        return columnIndexes.getOrDefault(columnName, -1);
+    }
+}
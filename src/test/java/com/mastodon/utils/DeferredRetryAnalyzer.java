@@ -0,0 +1,25 @@
+package com.mastodon.utils;
+
+import org.testng.IRetryAnalyzer;
+import org.testng.ITestResult;
+
+/**
+ * Retry analyzer that never retries on the spot
+ * RerunOrchestrator consults it as soon as a test method fails. Failures
+ * caused by the browser or the site (see
+ * ExceptionHandlingUtils.isRetryable) are handed to the RerunOrchestrator,
+ * which runs them again in one pass at the end of the suite. Until then the
+ * failed attempt is reported as a retried skip, the way TestNG reports its
+ * own retries
+ */
+public class DeferredRetryAnalyzer implements IRetryAnalyzer {
+
+    @Override
+    public boolean retry(ITestResult result) {
+        if (RerunOrchestrator.defer(result)) {
+            result.setStatus(ITestResult.SKIP);
+            result.setWasRetried(true);
+        }
+        return false;
+    }
+}
@@ -1,26 +1,32 @@
 package com.mastodon.utils;
 
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFCell;
-
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * Utility class for reading Excel (XLSX) files for test data
  * Supports data-driven testing with external Excel data sources
+ * Sheets are streamed through XlsxStreamReader instead of loading the
+ * workbook object model. A sheet is parsed once per process and shared
+ * through TestDataCache until the file changes on disk, so readers hold no
+ * mutable state and can be used from parallel data providers. Across runs a
+ * parsed sheet is loaded from its DataSnapshot, without POI
  */
 public class ExcelDataReader {
 
+    private static final long IN_MEMORY_LIMIT_BYTES = Long.parseLong(
+            ConfigUtils.getProperty("excel.inMemoryLimitMb", "16")) * 1024 * 1024;
+
     private String filePath;
-    private XSSFWorkbook workbook;
 
     /**
      * Constructor to initialize Excel file path
@@ -32,29 +38,10 @@ public class ExcelDataReader {
     }
 
     /**
-     * Opens the Excel workbook
-     * 
-     * @throws IOException if file cannot be opened
-     */
-    private void openWorkbook() throws IOException {
-        if (workbook == null) {
-            FileInputStream fileInputStream = new FileInputStream(filePath);
-            workbook = new XSSFWorkbook(fileInputStream);
-        }
-    }
-
-    /**
-     * Closes the Excel workbook
+     * Kept for compatibility; the reader holds no open workbook between calls
      */
     public void closeWorkbook() {
-        try {
-            if (workbook != null) {
-                workbook.close();
-                workbook = null;
-            }
-        } catch (IOException e) {
-            System.err.println("Error closing workbook: " + e.getMessage());
-        }
+        // Nothing to release
     }
 
     /**
@@ -63,13 +50,7 @@ public class ExcelDataReader {
      * @return Number of sheets
      */
     public int getSheetCount() {
-        try {
-            openWorkbook();
-            return workbook.getNumberOfSheets();
-        } catch (IOException e) {
-            System.err.println("Error getting sheet count: " + e.getMessage());
-            return 0;
-        }
+        return getSheetNames().size();
     }
 
     /**
@@ -78,16 +59,12 @@ public class ExcelDataReader {
      * @return List of sheet names
      */
     public List<String> getSheetNames() {
-        List<String> sheetNames = new ArrayList<>();
         try {
-            openWorkbook();
-            for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
-                sheetNames.add(workbook.getSheetName(i));
-            }
+            return XlsxStreamReader.getSheetNames(filePath);
         } catch (IOException e) {
             System.err.println("Error getting sheet names: " + e.getMessage());
+            return new ArrayList<>();
         }
-        return sheetNames;
     }
 
     /**
@@ -97,16 +74,8 @@ public class ExcelDataReader {
      * @return Number of rows
      */
     public int getRowCount(String sheetName) {
-        try {
-            openWorkbook();
-            XSSFSheet sheet = workbook.getSheet(sheetName);
-            if (sheet != null) {
-                return sheet.getLastRowNum() + 1;
-            }
-        } catch (IOException e) {
-            System.err.println("Error getting row count: " + e.getMessage());
-        }
-        return 0;
+        DataTable table = table(sheetName);
+        return table != null ? table.getRecordCount() : 0;
     }
 
     /**
@@ -116,14 +85,9 @@ public class ExcelDataReader {
      * @return Number of columns
      */
     public int getColumnCount(String sheetName) {
-        try {
-            openWorkbook();
-            XSSFSheet sheet = workbook.getSheet(sheetName);
-            if (sheet != null && sheet.getRow(0) != null) {
-                return sheet.getRow(0).getLastCellNum();
-            }
-        } catch (IOException e) {
-            System.err.println("Error getting column count: " + e.getMessage());
+        DataTable table = table(sheetName);
+        if (table != null && table.getRecordCount() > 0) {
+            return table.getRecord(0).length;
         }
         return 0;
     }
@@ -137,20 +101,12 @@ public class ExcelDataReader {
      * @return Cell data as string
      */
     public String getCellData(String sheetName, int rowIndex, int columnIndex) {
-        try {
-            openWorkbook();
-            XSSFSheet sheet = workbook.getSheet(sheetName);
-            if (sheet != null) {
-                XSSFRow row = sheet.getRow(rowIndex);
-                if (row != null) {
-                    XSSFCell cell = row.getCell(columnIndex);
-                    if (cell != null) {
-                        return getCellValueAsString(cell);
-                    }
-                }
+        DataTable table = table(sheetName);
+        if (table != null && rowIndex >= 0 && rowIndex < table.getRecordCount()) {
+            String value = table.getValue(rowIndex, columnIndex);
+            if (value != null) {
+                return value;
             }
-        } catch (IOException e) {
-            System.err.println("Error reading cell data: " + e.getMessage());
         }
         return "";
     }
@@ -164,23 +120,15 @@ public class ExcelDataReader {
      * @return Cell data as string
      */
     public String getCellDataByColumnName(String sheetName, int rowIndex, String columnName) {
-        try {
-            openWorkbook();
-            XSSFSheet sheet = workbook.getSheet(sheetName);
-            if (sheet != null) {
-                // Find column index by header name
-                XSSFRow headerRow = sheet.getRow(0);
-                if (headerRow != null) {
-                    for (int i = 0; i < headerRow.getLastCellNum(); i++) {
-                        XSSFCell headerCell = headerRow.getCell(i);
-                        if (headerCell != null && getCellValueAsString(headerCell).equals(columnName)) {
-                            return getCellData(sheetName, rowIndex + 1, i); // +1 to skip header row
-                        }
-                    }
+        DataTable table = table(sheetName);
+        if (table != null && table.getRecordCount() > 0) {
+            // Find column index by header name
+            String[] headerRow = table.getRecord(0);
+            for (int i = 0; i < headerRow.length; i++) {
+                if (columnName.equals(headerRow[i])) {
+                    return getCellData(sheetName, rowIndex + 1, i); // +1 to skip header row
                 }
             }
-        } catch (IOException e) {
-            System.err.println("Error reading cell data by column name: " + e.getMessage());
         }
         return "";
     }
@@ -193,33 +141,14 @@ public class ExcelDataReader {
      * @return 2D array of data
      */
     public String[][] getAllData(String sheetName, boolean includeHeaders) {
+        List<String[]> dataList = new ArrayList<>();
         try {
-            openWorkbook();
-            XSSFSheet sheet = workbook.getSheet(sheetName);
-            if (sheet != null) {
-                int startRow = includeHeaders ? 0 : 1;
-                int rowCount = sheet.getLastRowNum() + 1 - startRow;
-                int columnCount = sheet.getRow(0).getLastCellNum();
-
-                String[][] data = new String[rowCount][columnCount];
-
-                for (int i = 0; i < rowCount; i++) {
-                    XSSFRow row = sheet.getRow(i + startRow);
-                    for (int j = 0; j < columnCount; j++) {
-                        if (row != null) {
-                            XSSFCell cell = row.getCell(j);
-                            data[i][j] = cell != null ? getCellValueAsString(cell) : "";
-                        } else {
-                            data[i][j] = "";
-                        }
-                    }
-                }
-                return data;
-            }
-        } catch (IOException e) {
+            iterateRows(sheetName, includeHeaders).forEachRemaining(dataList::add);
+        } catch (UncheckedIOException e) {
             System.err.println("Error reading all data: " + e.getMessage());
+            return new String[0][0];
         }
-        return new String[0][0];
+        return dataList.toArray(new String[dataList.size()][]);
     }
 
     /**
@@ -231,80 +160,204 @@ public class ExcelDataReader {
     public List<Map<String, String>> getDataAsMapList(String sheetName) {
         List<Map<String, String>> dataList = new ArrayList<>();
         try {
-            openWorkbook();
-            XSSFSheet sheet = workbook.getSheet(sheetName);
-            if (sheet != null) {
-                XSSFRow headerRow = sheet.getRow(0);
-                if (headerRow != null) {
-                    // Get headers
-                    List<String> headers = new ArrayList<>();
-                    for (int i = 0; i < headerRow.getLastCellNum(); i++) {
-                        XSSFCell headerCell = headerRow.getCell(i);
-                        headers.add(headerCell != null ? getCellValueAsString(headerCell) : "Column" + i);
-                    }
+            iterateMaps(sheetName).forEachRemaining(dataList::add);
+        } catch (UncheckedIOException e) {
+            System.err.println("Error reading data as map list: " + e.getMessage());
+            dataList.clear();
+        }
+        return dataList;
+    }
+
+    /**
+     * Iterates over the rows of a sheet, for TestNG data providers returning
+     * Iterator&lt;Object[]&gt;
+     * Every row has as many values as the header row, like getAllData.
+     * Files up to excel.inMemoryLimitMb are served from the shared parsed sheet.
+     * Larger files are streamed without holding the sheet in memory: the file
+     * is read as the iterator advances and closed when it is exhausted
+     * 
+     * @param sheetName      Name of the sheet
+     * @param includeHeaders Whether to include header row
+     * @return Iterator over the rows
+     */
+    public Iterator<String[]> iterateRows(String sheetName, boolean includeHeaders) {
+        Iterator<String[]> rows = sheetRows(sheetName);
+        if (!rows.hasNext()) {
+            return rows;
+        }
+        String[] headerRow = rows.next();
+        int columnCount = headerRow.length;
+        return new Iterator<String[]>() {
+            private boolean headerPending = includeHeaders;
 
-                    // Read data rows
-                    for (int rowIndex = 1; rowIndex <= sheet.getLastRowNum(); rowIndex++) {
-                        XSSFRow row = sheet.getRow(rowIndex);
-                        Map<String, String> rowData = new HashMap<>();
+            @Override
+            public boolean hasNext() {
+                return headerPending || rows.hasNext();
+            }
 
-                        for (int colIndex = 0; colIndex < headers.size(); colIndex++) {
-                            String cellValue = "";
-                            if (row != null) {
-                                XSSFCell cell = row.getCell(colIndex);
-                                cellValue = cell != null ? getCellValueAsString(cell) : "";
-                            }
-                            rowData.put(headers.get(colIndex), cellValue);
-                        }
-                        dataList.add(rowData);
+            @Override
+            public String[] next() {
+                String[] row = headerPending ? headerRow : rows.next();
+                headerPending = false;
+                String[] data = Arrays.copyOf(row, columnCount);
+                for (int i = 0; i < columnCount; i++) {
+                    if (data[i] == null) {
+                        data[i] = "";
                     }
                 }
+                return data;
             }
-        } catch (IOException e) {
-            System.err.println("Error reading data as map list: " + e.getMessage());
+        };
+    }
+
+    /**
+     * Streams the data rows of a sheet as maps keyed by the column headers,
+     * with the same values as getDataAsMapList
+     * 
+     * @param sheetName Name of the sheet
+     * @return Iterator over the rows as maps
+     */
+    public Iterator<Map<String, String>> iterateMaps(String sheetName) {
+        Iterator<String[]> rows = sheetRows(sheetName);
+        String[] headerRow = rows.hasNext() ? rows.next() : new String[0];
+        List<String> headers = new ArrayList<>();
+        for (int i = 0; i < headerRow.length; i++) {
+            headers.add(headerRow[i] != null ? headerRow[i] : "Column" + i);
         }
+        return new Iterator<Map<String, String>>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public Map<String, String> next() {
+                String[] row = rows.next();
+                Map<String, String> rowData = new HashMap<>();
+                for (int colIndex = 0; colIndex < headers.size(); colIndex++) {
+                    String cellValue = colIndex < row.length ? row[colIndex] : null;
+                    rowData.put(headers.get(colIndex), cellValue != null ? cellValue : "");
+                }
+                return rowData;
+            }
+        };
+    }
+
+    /**
+     * Binds the data rows of a sheet onto objects of the given type (see
+     * RowBinder), so values are looked up and converted once instead of
+     * through a map per row
+     * 
+     * @param sheetName Name of the sheet
+     * @param type      Row type
+     * @return Bound rows
+     * @throws IllegalArgumentException if a column is missing or a value cannot be converted
+     */
+    public <T> List<T> getDataAs(String sheetName, Class<T> type) {
+        List<T> dataList = new ArrayList<>();
+        iterateAs(sheetName, type).forEachRemaining(dataList::add);
         return dataList;
     }
 
     /**
-     * Converts cell value to string based on cell type
+     * Binds the data rows of a sheet onto objects of the given type as the iterator advances
      * 
-     * @param cell Excel cell
-     * @return String representation of cell value
+     * @param sheetName Name of the sheet
+     * @param type      Row type
+     * @return Iterator over the bound rows
+     * @throws IllegalArgumentException if a column is missing from a non-empty source
      */
-    private String getCellValueAsString(XSSFCell cell) {
-        if (cell == null) {
-            return "";
+    public <T> Iterator<T> iterateAs(String sheetName, Class<T> type) {
+        Iterator<String[]> rows = sheetRows(sheetName);
+        if (!rows.hasNext()) {
+            return Collections.emptyIterator();
         }
+        return RowBinder.of(type, rows.next()).bindAll(rows);
+    }
 
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue();
-            case NUMERIC:
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    return cell.getDateCellValue().toString();
-                } else {
-                    // Handle both integer and decimal numbers
-                    double numericValue = cell.getNumericCellValue();
-                    if (numericValue == Math.floor(numericValue)) {
-                        return String.valueOf((long) numericValue);
-                    } else {
-                        return String.valueOf(numericValue);
+    /**
+     * Gets the parsed sheet from the shared cache, parsing it again only when the file changed on disk
+     * 
+     * @return Rows as read by XlsxStreamReader, or null if the sheet cannot be read
+     */
+    private DataTable table(String sheetName) {
+        try {
+            String part = "xlsx:" + sheetName;
+            return TestDataCache.get(filePath, part, file -> DataSnapshot.load(file, part, source -> {
+                List<String[]> rows = new ArrayList<>();
+                try (XlsxStreamReader reader = new XlsxStreamReader(source.getPath(), sheetName)) {
+                    String[] row;
+                    while ((row = reader.next()) != null) {
+                        rows.add(row);
                     }
                 }
-            case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            case FORMULA:
-                try {
-                    return String.valueOf(cell.getNumericCellValue());
-                } catch (Exception e) {
-                    return cell.getStringCellValue();
+                return new DataTable(rows);
+            }));
+        } catch (IOException e) {
+            System.err.println("Error reading Excel sheet: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Gets the raw rows of a sheet, from the shared table or streamed for large files
+     */
+    private Iterator<String[]> sheetRows(String sheetName) {
+        if (new File(filePath).length() <= IN_MEMORY_LIMIT_BYTES) {
+            DataTable table = table(sheetName);
+            if (table == null) {
+                return Collections.emptyIterator();
+            }
+            return new Iterator<String[]>() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < table.getRecordCount();
+                }
+
+                @Override
+                public String[] next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return table.getRecord(index++);
                 }
-            case BLANK:
-                return "";
-            default:
-                return "";
+            };
         }
+
+        try {
+            return closingIterator(new XlsxStreamReader(filePath, sheetName));
+        } catch (IOException e) {
+            System.err.println("Error reading Excel sheet: " + e.getMessage());
+            return Collections.emptyIterator();
+        }
+    }
+
+    /**
+     * Iterates over the rows of the reader and closes it once they are exhausted
+     */
+    private static Iterator<String[]> closingIterator(XlsxStreamReader reader) {
+        Iterator<String[]> rows = reader.iterator();
+        return new Iterator<String[]>() {
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = rows.hasNext();
+                if (!hasNext) {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        System.err.println("Error closing Excel file: " + e.getMessage());
+                    }
+                }
+                return hasNext;
+            }
+
+            @Override
+            public String[] next() {
+                return rows.next();
+            }
+        };
     }
 
     /**
@@ -315,10 +368,7 @@ public class ExcelDataReader {
      * @return 2D array of data (excluding headers)
      */
     public static String[][] readExcelData(String filePath, String sheetName) {
-        ExcelDataReader reader = new ExcelDataReader(filePath);
-        String[][] data = reader.getAllData(sheetName, false);
-        reader.closeWorkbook();
-        return data;
+        return new ExcelDataReader(filePath).getAllData(sheetName, false);
     }
 
     /**
@@ -329,9 +379,6 @@ public class ExcelDataReader {
      * @return List of maps representing rows
      */
     public static List<Map<String, String>> readExcelDataAsMapList(String filePath, String sheetName) {
-        ExcelDataReader reader = new ExcelDataReader(filePath);
-        List<Map<String, String>> data = reader.getDataAsMapList(sheetName);
-        reader.closeWorkbook();
-        return data;
+        return new ExcelDataReader(filePath).getDataAsMapList(sheetName);
     }
 }
\ No newline at end of file
@@ -0,0 +1,347 @@
+package com.mastodon.utils;
+
+import org.testng.IAlterSuiteListener;
+import org.testng.annotations.Test;
+import org.testng.xml.XmlClass;
+import org.testng.xml.XmlInclude;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Suite planner that runs every selected test method exactly once, even when
+ * several &lt;test&gt; blocks in testng.xml select the same classes
+ * Each block's selection is resolved the way TestNG does it (explicit method
+ * includes, otherwise included/excluded groups, plus everything the selected
+ * methods depend on). Methods that depend on each other always stay in the
+ * same block; each such set runs in the block that selected most of it, and
+ * blocks left without methods are dropped. The blocks that originally
+ * selected a method are kept so reports can attribute the result to all of them
+ * Disable with -Dplanner.executeOnce=false or planner.executeOnce in config.properties
+ */
+public class ExecuteOncePlanner implements IAlterSuiteListener {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("planner.executeOnce",
+            ConfigUtils.getProperty("planner.executeOnce", "true")));
+
+    // Qualified method name (class.method) -> names of the <test> blocks that selected it
+    private static final Map<String, Set<String>> selectingTests = new ConcurrentHashMap<>();
+
+    /**
+     * Test method as seen by the planner, with class level @Test attributes merged in
+     */
+    private static class PlannedMethod {
+        private final String className;
+        private final String name;
+        private final Set<String> groups = new LinkedHashSet<>();
+        private final Set<String> dependsOnGroups = new LinkedHashSet<>();
+        private final Set<String> dependsOnMethods = new LinkedHashSet<>();
+
+        private PlannedMethod(String className, String name) {
+            this.className = className;
+            this.name = name;
+        }
+
+        private String key() {
+            return className + "." + name;
+        }
+    }
+
+    @Override
+    public void alter(List<XmlSuite> suites) {
+        if (!ENABLED) {
+            return;
+        }
+        for (XmlSuite suite : suites) {
+            try {
+                plan(suite);
+            } catch (ClassNotFoundException | IllegalStateException e) {
+                System.err.println("Execute-once planning skipped for suite " + suite.getName() + ": "
+                        + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gets the &lt;test&gt; blocks that selected a method before planning
+     *
+     * @param qualifiedName Fully qualified method name (class.method)
+     * @return Block names, empty if the planner did not run
+     */
+    public static Set<String> getSelectingTests(String qualifiedName) {
+        return selectingTests.getOrDefault(qualifiedName, Collections.emptySet());
+    }
+
+    private void plan(XmlSuite suite) throws ClassNotFoundException {
+        List<XmlTest> blocks = new ArrayList<>();
+        // Blocks with enabled="false" are already dropped by the parser
+        for (XmlTest test : suite.getTests()) {
+            if (!test.getXmlPackages().isEmpty() || !test.getMethodSelectors().isEmpty()
+                    || !test.getMetaGroups().isEmpty()) {
+                throw new IllegalStateException("<test> " + test.getName()
+                        + " uses packages, method selectors or meta groups");
+            }
+            blocks.add(test);
+        }
+        if (blocks.size() < 2) {
+            return;
+        }
+
+        Map<String, List<PlannedMethod>> methodsByClass = new HashMap<>();
+        Map<String, PlannedMethod> methodsByKey = new HashMap<>();
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        List<Set<String>> selections = new ArrayList<>();
+        for (XmlTest block : blocks) {
+            selections.add(select(block, methodsByClass, methodsByKey, dependencies));
+        }
+
+        // Methods linked by dependencies must run in the same block
+        Map<String, String> parents = new HashMap<>();
+        for (Set<String> selection : selections) {
+            for (String key : selection) {
+                parents.putIfAbsent(key, key);
+            }
+        }
+        for (Map.Entry<String, Set<String>> edge : dependencies.entrySet()) {
+            for (String dependency : edge.getValue()) {
+                parents.put(find(parents, edge.getKey()), find(parents, dependency));
+            }
+        }
+        Map<String, Set<String>> components = new LinkedHashMap<>();
+        for (Set<String> selection : selections) {
+            for (String key : selection) {
+                components.computeIfAbsent(find(parents, key), root -> new LinkedHashSet<>()).add(key);
+            }
+        }
+
+        // Each component runs in the block that selected most of it, the earliest on ties
+        List<Set<String>> owned = new ArrayList<>();
+        for (int i = 0; i < blocks.size(); i++) {
+            owned.add(new LinkedHashSet<>());
+        }
+        for (Set<String> component : components.values()) {
+            int owner = 0;
+            long bestOverlap = -1;
+            for (int i = 0; i < blocks.size(); i++) {
+                long overlap = component.stream().filter(selections.get(i)::contains).count();
+                if (overlap > bestOverlap) {
+                    bestOverlap = overlap;
+                    owner = i;
+                }
+            }
+            owned.get(owner).addAll(component);
+        }
+
+        int totalSelections = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            totalSelections += selections.get(i).size();
+            for (String key : selections.get(i)) {
+                selectingTests.computeIfAbsent(key, k -> Collections.synchronizedSet(new LinkedHashSet<>()))
+                        .add(blocks.get(i).getName());
+            }
+        }
+
+        List<String> removedBlocks = new ArrayList<>();
+        for (int i = 0; i < blocks.size(); i++) {
+            XmlTest block = blocks.get(i);
+            if (owned.get(i).isEmpty()) {
+                suite.getTests().remove(block);
+                removedBlocks.add(block.getName());
+            } else {
+                block.setXmlClasses(toXmlClasses(block, owned.get(i), methodsByClass));
+            }
+        }
+
+        System.out.println("Execute-once plan for " + suite.getName() + ": " + totalSelections
+                + " selections in " + blocks.size() + " <test> blocks -> " + components.values().stream()
+                        .mapToInt(Set::size).sum() + " executions"
+                + (removedBlocks.isEmpty() ? "" : ", blocks without own methods removed: " + removedBlocks));
+    }
+
+    /**
+     * Resolves the methods a block selects, including everything they depend on
+     */
+    private Set<String> select(XmlTest block, Map<String, List<PlannedMethod>> methodsByClass,
+            Map<String, PlannedMethod> methodsByKey, Map<String, Set<String>> dependencies)
+            throws ClassNotFoundException {
+        List<PlannedMethod> blockMethods = new ArrayList<>();
+        Set<String> selected = new LinkedHashSet<>();
+        for (XmlClass xmlClass : block.getXmlClasses()) {
+            List<PlannedMethod> classMethods = methodsByClass.get(xmlClass.getName());
+            if (classMethods == null) {
+                classMethods = loadMethods(xmlClass.getName());
+                methodsByClass.put(xmlClass.getName(), classMethods);
+                classMethods.forEach(method -> methodsByKey.put(method.key(), method));
+            }
+            blockMethods.addAll(classMethods);
+
+            List<String> includes = new ArrayList<>();
+            for (XmlInclude include : xmlClass.getIncludedMethods()) {
+                includes.add(include.getName());
+            }
+            for (PlannedMethod method : classMethods) {
+                // Explicitly included methods bypass group filtering, as in TestNG
+                boolean included = includes.isEmpty()
+                        ? matchesGroups(method, block.getIncludedGroups(), block.getExcludedGroups())
+                        : matchesAny(method.name, includes);
+                if (included && !matchesAny(method.name, xmlClass.getExcludedMethods())) {
+                    selected.add(method.key());
+                }
+            }
+        }
+
+        // TestNG pulls in the methods and groups selected methods depend on
+        Map<String, Set<String>> declaredDependencies = GroupDependencyRefiner.parse(
+                block.getParameter(GroupDependencyRefiner.PARAMETER));
+        List<String> pending = new ArrayList<>(selected);
+        while (!pending.isEmpty()) {
+            PlannedMethod method = methodsByKey.get(pending.remove(pending.size() - 1));
+            Set<String> groupDependencies = new LinkedHashSet<>(method.dependsOnGroups);
+            for (String group : method.groups) {
+                String dependsOn = block.getXmlDependencyGroups().get(group);
+                if (dependsOn != null) {
+                    groupDependencies.addAll(Arrays.asList(dependsOn.trim().split("\\s+")));
+                }
+                groupDependencies.addAll(declaredDependencies.getOrDefault(group, Collections.emptySet()));
+            }
+
+            for (PlannedMethod candidate : blockMethods) {
+                boolean byMethod = method.dependsOnMethods.stream().anyMatch(dependency -> dependency.contains(".")
+                        ? matches(candidate.key(), dependency)
+                        : candidate.className.equals(method.className) && matches(candidate.name, dependency));
+                boolean byGroup = candidate.groups.stream().anyMatch(group -> matchesAny(group, groupDependencies));
+                if ((byMethod || byGroup) && candidate != method) {
+                    dependencies.computeIfAbsent(method.key(), key -> new LinkedHashSet<>()).add(candidate.key());
+                    if (selected.add(candidate.key())) {
+                        pending.add(candidate.key());
+                    }
+                }
+            }
+        }
+        return selected;
+    }
+
+    private List<PlannedMethod> loadMethods(String className) throws ClassNotFoundException {
+        Class<?> testClass = Class.forName(className, false, Thread.currentThread().getContextClassLoader());
+        Test classAnnotation = testClass.getAnnotation(Test.class);
+        List<PlannedMethod> methods = new ArrayList<>();
+        for (Method method : testClass.getMethods()) {
+            Test annotation = method.getAnnotation(Test.class);
+            boolean classLevelTest = classAnnotation != null && method.getDeclaringClass() != Object.class
+                    && !Modifier.isStatic(method.getModifiers()) && !isConfigurationMethod(method);
+            if ((annotation == null && !classLevelTest) || (annotation != null && !annotation.enabled())) {
+                continue;
+            }
+
+            PlannedMethod planned = new PlannedMethod(className, method.getName());
+            for (Test source : new Test[] { classAnnotation, annotation }) {
+                if (source != null) {
+                    planned.groups.addAll(Arrays.asList(source.groups()));
+                    planned.dependsOnGroups.addAll(Arrays.asList(source.dependsOnGroups()));
+                    planned.dependsOnMethods.addAll(Arrays.asList(source.dependsOnMethods()));
+                }
+            }
+            methods.add(planned);
+        }
+        // getMethods() has no defined order; keep the generated includes stable between runs
+        methods.sort((a, b) -> a.name.compareTo(b.name));
+        return methods;
+    }
+
+    private boolean isConfigurationMethod(Method method) {
+        for (Annotation annotation : method.getAnnotations()) {
+            String type = annotation.annotationType().getName();
+            if (type.startsWith("org.testng.annotations.") && !type.equals(Test.class.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesGroups(PlannedMethod method, List<String> includedGroups, List<String> excludedGroups) {
+        for (String group : method.groups) {
+            if (matchesAny(group, excludedGroups)) {
+                return false;
+            }
+        }
+        return includedGroups.isEmpty() || method.groups.stream().anyMatch(group -> matchesAny(group, includedGroups));
+    }
+
+    private boolean matchesAny(String value, Iterable<String> patterns) {
+        for (String pattern : patterns) {
+            if (matches(value, pattern)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matches(String value, String pattern) {
+        if (value.equals(pattern)) {
+            return true;
+        }
+        try {
+            // Group names and method includes are regular expressions in testng.xml
+            return value.matches(pattern);
+        } catch (PatternSyntaxException e) {
+            return false;
+        }
+    }
+
+    private String find(Map<String, String> parents, String key) {
+        String root = parents.computeIfAbsent(key, k -> k);
+        while (!root.equals(parents.get(root))) {
+            root = parents.get(root);
+        }
+        parents.put(key, root);
+        return root;
+    }
+
+    /**
+     * Rewrites a block's classes as explicit method includes, keeping the
+     * block's own class order and appending classes moved in from other blocks
+     */
+    private List<XmlClass> toXmlClasses(XmlTest block, Set<String> ownedKeys,
+            Map<String, List<PlannedMethod>> methodsByClass) {
+        Set<String> classNames = new LinkedHashSet<>();
+        for (XmlClass xmlClass : block.getXmlClasses()) {
+            classNames.add(xmlClass.getName());
+        }
+        for (String key : ownedKeys) {
+            classNames.add(key.substring(0, key.lastIndexOf('.')));
+        }
+
+        List<XmlClass> xmlClasses = new ArrayList<>();
+        for (String className : classNames) {
+            XmlClass xmlClass = new XmlClass(className, xmlClasses.size(), true);
+            List<XmlInclude> includes = new ArrayList<>();
+            for (PlannedMethod method : methodsByClass.get(className)) {
+                if (ownedKeys.contains(method.key())) {
+                    XmlInclude include = new XmlInclude(method.name, includes.size());
+                    include.setXmlClass(xmlClass);
+                    includes.add(include);
+                }
+            }
+            if (!includes.isEmpty()) {
+                xmlClass.setIncludedMethods(includes);
+                xmlClass.setXmlTest(block);
+                xmlClasses.add(xmlClass);
+            }
+        }
+        return xmlClasses;
+    }
+}
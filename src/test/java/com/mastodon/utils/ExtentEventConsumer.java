@@ -0,0 +1,125 @@
+package com.mastodon.utils;
+
+import com.aventstack.extentreports.ExtentTest;
+import com.aventstack.extentreports.Status;
+
+import java.io.File;
+import java.util.Set;
+
+/**
+ * Writes TestListener events into their ExtentTest nodes
+ * Stack trace formatting and report model updates happen here instead of
+ * on the test thread, under the ExtentManager lock the report flush takes
+ */
+public class ExtentEventConsumer implements TestEventConsumer {
+
+    @Override
+    public void onEvent(TestEvent event) {
+        ExtentTest node = event.getReportNode();
+        if (node == null) {
+            return;
+        }
+        // The background flush reads the same nodes
+        ExtentManager.update(() -> write(node, event));
+    }
+
+    private void write(ExtentTest node, TestEvent event) {
+        Throwable throwable = event.getThrowable();
+        switch (event.getType()) {
+            case TEST_START:
+                if (event.getDescription() != null && !event.getDescription().isEmpty()) {
+                    node.info("Test Description: " + event.getDescription());
+                }
+                if (!event.getGroups().isEmpty()) {
+                    node.assignCategory(event.getGroups().toArray(new String[0]));
+                }
+                // Methods run once by ExecuteOncePlanner count for every <test> block that selected them
+                Set<String> selectingTests = ExecuteOncePlanner.getSelectingTests(event.getTestName());
+                if (!selectingTests.isEmpty()) {
+                    node.assignCategory(selectingTests.toArray(new String[0]));
+                }
+                break;
+            case TEST_SUCCESS:
+                node.log(Status.PASS, "Test Passed Successfully");
+                break;
+            case TEST_FAILURE:
+                node.log(Status.FAIL, "Test Failed: " + message(throwable));
+                node.log(Status.FAIL, "Stack Trace: " + getStackTraceAsString(throwable));
+                logAttachments(node, event, "Screenshot captured and attached to report");
+                System.out.println("Test failed: " + event.getMethodName() + " - " + message(throwable)
+                        + (event.getLogPath() != null ? " (log: " + event.getLogPath() + ")" : ""));
+                break;
+            case TEST_SKIPPED:
+                node.log(Status.SKIP, "Test Skipped: " + (throwable != null ? throwable.getMessage() : "No reason provided"));
+                if (throwable != null) {
+                    node.log(Status.SKIP, "Stack Trace: " + getStackTraceAsString(throwable));
+                }
+                System.out.println("Test skipped: " + event.getMethodName());
+                break;
+            case TEST_DEFERRED:
+                // The rerun reports into the same node, so the report keeps both attempts
+                node.log(Status.WARNING, "Attempt failed, rerun at the end of the suite: " + message(throwable));
+                node.log(Status.WARNING, "Stack Trace: " + getStackTraceAsString(throwable));
+                logAttachments(node, event, "Screenshot captured before the rerun");
+                System.out.println("Test deferred to rerun: " + event.getMethodName() + " - " + message(throwable)
+                        + (event.getLogPath() != null ? " (log: " + event.getLogPath() + ")" : ""));
+                break;
+            case TEST_FAILED_WITHIN_PERCENTAGE:
+                node.log(Status.WARNING, "Test Failed but within Success Percentage: " + message(throwable));
+                node.log(Status.WARNING, "Stack Trace: " + getStackTraceAsString(throwable));
+                System.out.println("Test failed but within success percentage: " + event.getMethodName());
+                break;
+            case CONFIGURATION_FAILURE:
+                node.log(Status.FAIL, "Configuration Failed: " + message(throwable));
+                node.log(Status.FAIL, "Stack Trace: " + getStackTraceAsString(throwable));
+                logAttachments(node, event, "Screenshot captured for configuration failure");
+                System.out.println("Configuration failed: " + event.getMethodName() + " - " + message(throwable)
+                        + (event.getLogPath() != null ? " (log: " + event.getLogPath() + ")" : ""));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void logAttachments(ExtentTest node, TestEvent event, String screenshotMessage) {
+        if (event.getScreenshotPath() != null) {
+            node.addScreenCaptureFromPath(event.getScreenshotPath());
+            node.log(Status.INFO, screenshotMessage);
+        }
+        if (event.getAttachmentWarning() != null) {
+            node.log(Status.WARNING, event.getAttachmentWarning());
+        }
+        if (event.getClipPath() != null) {
+            node.addScreenCaptureFromPath(event.getClipPath(), "Screencast before failure");
+            node.log(Status.INFO, "Screencast of the last seconds attached to report");
+        }
+        if (event.getLogPath() != null) {
+            node.log(Status.INFO, "Test log: <a href='" + new File(event.getLogPath()).toURI() + "'>"
+                    + new File(event.getLogPath()).getName() + "</a>");
+        }
+    }
+
+    private String message(Throwable throwable) {
+        return throwable != null ? throwable.getMessage() : "No message available";
+    }
+
+    /**
+     * Converts throwable stack trace to string
+     * @param throwable The throwable to convert
+     * @return Stack trace as string
+     */
+    private String getStackTraceAsString(Throwable throwable) {
+        if (throwable == null) {
+            return "No stack trace available";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(throwable.toString()).append("\n");
+
+        for (StackTraceElement element : throwable.getStackTrace()) {
+            sb.append("\tat ").append(element.toString()).append("\n");
+        }
+
+        return sb.toString();
+    }
+}
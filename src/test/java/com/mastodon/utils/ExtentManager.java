@@ -1,42 +1,79 @@
 package com.mastodon.utils;
 
 import com.aventstack.extentreports.ExtentReports;
+import com.aventstack.extentreports.ExtentTest;
 import com.aventstack.extentreports.reporter.ExtentSparkReporter;
+import com.aventstack.extentreports.reporter.JsonFormatter;
 import com.aventstack.extentreports.reporter.configuration.Theme;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * ExtentManager class for managing ExtentReports configuration
  * Provides centralized setup for test reporting
+ * A single report is shared by the whole suite; tests are created, written
+ * (see update) and flushed under one lock, and the report is flushed
+ * incrementally by a background thread
+ * A shard (-Dshard=i/N) or work-stealing worker writes its report and a JSON
+ * archive of it into its own directory, for ShardReportMerger to combine
  */
 public class ExtentManager {
-    
-    private static ExtentReports extent;
-    
+
+    private static final String REPORT_PATH = "test-output/ExtentReport.html";
+    private static final Object lock = new Object();
+    private static final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    private static volatile ExtentReports extent;
+    private static ScheduledExecutorService flusher;
+
     /**
-     * Creates and configures ExtentReports instance
+     * Creates and configures the suite-wide ExtentReports instance
+     * Repeated calls return the instance that was already created, and
+     * restart the background flush if shutdown() stopped it, e.g. for the
+     * next unit a work-stealing worker runs
      * @return configured ExtentReports instance
      */
     public static ExtentReports createInstance() {
-        String reportPath = "test-output/ExtentReport.html";
-        
-        ExtentSparkReporter sparkReporter = new ExtentSparkReporter(reportPath);
-        sparkReporter.config().setDocumentTitle("Mastodon Social Test Automation Report");
-        sparkReporter.config().setReportName("Functional Test Report");
-        sparkReporter.config().setTheme(Theme.STANDARD);
-        
-        extent = new ExtentReports();
-        extent.attachReporter(sparkReporter);
-        
-        extent.setSystemInfo("Host Name", "Localhost");
-        extent.setSystemInfo("Environment", "QA");
-        extent.setSystemInfo("User", System.getProperty("user.name"));
-        extent.setSystemInfo("Application", "Mastodon Social");
-        extent.setSystemInfo("Operating System", System.getProperty("os.name"));
-        extent.setSystemInfo("Java Version", System.getProperty("java.version"));
-        
-        return extent;
+        synchronized (lock) {
+            if (extent != null) {
+                if (flusher == null) {
+                    startBackgroundFlush();
+                }
+                return extent;
+            }
+
+            String partialReportDir = Shard.reportDir();
+            String reportPath = partialReportDir != null ? partialReportDir + "/ExtentReport.html" : REPORT_PATH;
+            ExtentSparkReporter sparkReporter = new ExtentSparkReporter(reportPath);
+            sparkReporter.config().setDocumentTitle("Mastodon Social Test Automation Report");
+            sparkReporter.config().setReportName("Functional Test Report");
+            sparkReporter.config().setTheme(Theme.STANDARD);
+
+            ExtentReports reports = new ExtentReports();
+            reports.attachReporter(sparkReporter);
+            if (partialReportDir != null) {
+                reports.attachReporter(new JsonFormatter(partialReportDir + "/extent.json"));
+            }
+
+            reports.setSystemInfo("Host Name", "Localhost");
+            reports.setSystemInfo("Environment", "QA");
+            reports.setSystemInfo("User", System.getProperty("user.name"));
+            reports.setSystemInfo("Application", "Mastodon Social");
+            reports.setSystemInfo("Operating System", System.getProperty("os.name"));
+            reports.setSystemInfo("Java Version", System.getProperty("java.version"));
+            if (Shard.isActive()) {
+                reports.setSystemInfo("Shard", Shard.current().toString());
+            }
+
+            extent = reports;
+            startBackgroundFlush();
+            return extent;
+        }
     }
-    
+
     /**
      * Gets the current ExtentReports instance
      * @return ExtentReports instance
@@ -44,4 +81,88 @@ public class ExtentManager {
     public static ExtentReports getInstance() {
         return extent;
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates a test in the shared report, safe to call from parallel test threads
+     * @param name Test name
+     * @return Created ExtentTest
+     */
+    public static ExtentTest createTest(String name) {
+        ExtentReports reports = createInstance();
+        synchronized (lock) {
+            ExtentTest extentTest = reports.createTest(name);
+            dirty.set(true);
+            return extentTest;
+        }
+    }
+
+    /**
+     * Removes a test from the shared report, e.g. a skipped attempt that is run again
+     * @param extentTest Test to remove
+     */
+    public static void removeTest(ExtentTest extentTest) {
+        ExtentReports reports = createInstance();
+        synchronized (lock) {
+            reports.removeTest(extentTest);
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Writes to report nodes under the lock the flush holds, so a flush never
+     * reads a test while it is being changed
+     * @param update Writes to ExtentTest nodes
+     */
+    public static void update(Runnable update) {
+        synchronized (lock) {
+            update.run();
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Marks the report as changed so the next background flush writes it
+     */
+    public static void markDirty() {
+        dirty.set(true);
+    }
+
+    /**
+     * Writes the report now if anything changed since the last flush
+     */
+    public static void flush() {
+        if (extent == null || !dirty.getAndSet(false)) {
+            return;
+        }
+        synchronized (lock) {
+            extent.flush();
+        }
+    }
+
+    /**
+     * Stops background flushing and writes the final report
+     */
+    public static void shutdown() {
+        synchronized (lock) {
+            if (flusher != null) {
+                flusher.shutdownNow();
+                flusher = null;
+            }
+        }
+        markDirty();
+        flush();
+    }
+
+    /**
+     * Starts the daemon thread that flushes changed reports periodically
+     */
+    private static void startBackgroundFlush() {
+        long intervalSeconds = Long.parseLong(ConfigUtils.getProperty("report.flushIntervalSeconds", "10"));
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "extent-report-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(ExtentManager::flush, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+}
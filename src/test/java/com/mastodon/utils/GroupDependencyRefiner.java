@@ -0,0 +1,144 @@
+package com.mastodon.utils;
+
+import org.testng.IAlterSuiteListener;
+import org.testng.IAnnotationTransformer;
+import org.testng.annotations.ITestAnnotation;
+import org.testng.annotations.Test;
+import org.testng.xml.XmlSuite;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Replaces group level dependencies with method level ones so dependent
+ * tests no longer wait for a whole group to finish
+ * A method that depends on a group (through dependsOnGroups or the
+ * groupDependencies suite parameter) is made to depend only on the methods
+ * of that group in its own class. Each dependent then starts as soon as its
+ * own prerequisites pass, and a failing prerequisite only skips the tests of
+ * that class. When the class has no method in the group, the group
+ * dependency is kept as it was
+ * The suite parameter replaces &lt;dependencies&gt; in the suite level &lt;groups&gt;,
+ * which TestNG cannot parse, e.g.
+ * &lt;parameter name="groupDependencies" value="regression:smoke; advanced:ui"/&gt;
+ */
+public class GroupDependencyRefiner implements IAlterSuiteListener, IAnnotationTransformer {
+
+    public static final String PARAMETER = "groupDependencies";
+
+    // Group -> groups it depends on, declared in the suite XML
+    private static final Map<String, Set<String>> declaredDependencies = new ConcurrentHashMap<>();
+    private static final Set<String> reported = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void alter(List<XmlSuite> suites) {
+        for (XmlSuite suite : suites) {
+            declaredDependencies.putAll(parse(suite.getParameter(PARAMETER)));
+        }
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void transform(ITestAnnotation annotation, Class testClass, Constructor testConstructor, Method testMethod) {
+        if (testMethod == null || !annotation.getEnabled()) {
+            return;
+        }
+
+        Set<String> groups = groupsOf(testMethod);
+        groups.addAll(Arrays.asList(annotation.getGroups()));
+        Set<String> prerequisiteGroups = new LinkedHashSet<>(Arrays.asList(annotation.getDependsOnGroups()));
+        for (String group : groups) {
+            prerequisiteGroups.addAll(declaredDependencies.getOrDefault(group, Collections.emptySet()));
+        }
+        // A method that belongs to a prerequisite group is itself a prerequisite, not a dependent
+        prerequisiteGroups.removeAll(groups);
+        if (prerequisiteGroups.isEmpty()) {
+            return;
+        }
+
+        Set<String> dependsOnMethods = new LinkedHashSet<>(Arrays.asList(annotation.getDependsOnMethods()));
+        Set<String> remainingGroups = new LinkedHashSet<>();
+        for (String prerequisite : prerequisiteGroups) {
+            Set<String> sameClassMethods = new LinkedHashSet<>();
+            for (Method sibling : testMethod.getDeclaringClass().getMethods()) {
+                Test siblingTest = sibling.getAnnotation(Test.class);
+                if (sibling.equals(testMethod) || siblingTest == null || !siblingTest.enabled()) {
+                    continue;
+                }
+                for (String siblingGroup : groupsOf(sibling)) {
+                    if (matches(siblingGroup, prerequisite)) {
+                        sameClassMethods.add(sibling.getName());
+                    }
+                }
+            }
+
+            if (sameClassMethods.isEmpty()) {
+                remainingGroups.add(prerequisite);
+            } else {
+                dependsOnMethods.addAll(sameClassMethods);
+            }
+        }
+
+        annotation.setDependsOnMethods(dependsOnMethods.toArray(new String[0]));
+        annotation.setDependsOnGroups(remainingGroups.toArray(new String[0]));
+
+        String name = testMethod.getDeclaringClass().getSimpleName() + "." + testMethod.getName();
+        if (reported.add(name)) {
+            System.out.println("Dependencies of " + name + ": methods " + dependsOnMethods
+                    + (remainingGroups.isEmpty() ? "" : ", groups " + remainingGroups));
+        }
+    }
+
+    /**
+     * Parses the groupDependencies suite parameter
+     *
+     * @param value Entries "group:prerequisite [prerequisite...]" separated by ';', may be null
+     * @return Group to prerequisite groups
+     */
+    public static Map<String, Set<String>> parse(String value) {
+        Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+        if (value == null || value.trim().isEmpty()) {
+            return dependencies;
+        }
+
+        for (String entry : value.split(";")) {
+            String[] parts = entry.split(":");
+            if (parts.length != 2 || parts[0].trim().isEmpty()) {
+                throw new IllegalArgumentException("Invalid " + PARAMETER + " entry: '" + entry.trim() + "'");
+            }
+            dependencies.computeIfAbsent(parts[0].trim(), group -> new LinkedHashSet<>())
+                    .addAll(Arrays.asList(parts[1].trim().split("\\s+")));
+        }
+        return dependencies;
+    }
+
+    private Set<String> groupsOf(Method method) {
+        Set<String> groups = new LinkedHashSet<>();
+        Test classAnnotation = method.getDeclaringClass().getAnnotation(Test.class);
+        if (classAnnotation != null) {
+            groups.addAll(Arrays.asList(classAnnotation.groups()));
+        }
+        Test annotation = method.getAnnotation(Test.class);
+        if (annotation != null) {
+            groups.addAll(Arrays.asList(annotation.groups()));
+        }
+        return groups;
+    }
+
+    private boolean matches(String group, String pattern) {
+        try {
+            return group.equals(pattern) || group.matches(pattern);
+        } catch (PatternSyntaxException e) {
+            return false;
+        }
+    }
+}
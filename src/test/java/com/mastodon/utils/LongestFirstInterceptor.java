@@ -0,0 +1,153 @@
+package com.mastodon.utils;
+
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Orders test methods longest-processing-time first using durations from
+ * previous runs (see TestDurationHistory), so long tests start early and do
+ * not leave the other threads idle at the end of a parallel run
+ * Priorities and dependsOnMethods are kept as constraints: a method is only
+ * scheduled once everything it depends on is scheduled, and lower priority
+ * values still come first. Methods without history use the average estimate
+ */
+public class LongestFirstInterceptor implements IMethodInterceptor {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(
+            ConfigUtils.getProperty("scheduler.longestFirst", "true"));
+
+    @Override
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        if (!ENABLED || methods.size() < 2) {
+            return methods;
+        }
+
+        long[] estimates = estimateDurations(methods, TestDurationHistory.load());
+        List<IMethodInstance> ordered = topologicalLongestFirst(methods, estimates);
+
+        int threads = Math.max(1, context.getCurrentXmlTest().getThreadCount());
+        System.out.println(String.format("Longest-first schedule for %s: %d methods, estimated makespan %dms"
+                + " (declaration order %dms) on %d threads",
+                context.getName(), methods.size(), makespan(ordered, methods, estimates, threads),
+                makespan(methods, methods, estimates, threads), threads));
+        return ordered;
+    }
+
+    private long[] estimateDurations(List<IMethodInstance> methods, Map<String, Long> history) {
+        long[] estimates = new long[methods.size()];
+        long knownTotal = 0;
+        int knownCount = 0;
+        for (int i = 0; i < methods.size(); i++) {
+            Long duration = history.get(methods.get(i).getMethod().getQualifiedName());
+            estimates[i] = duration != null ? duration : -1;
+            if (duration != null) {
+                knownTotal += duration;
+                knownCount++;
+            }
+        }
+
+        long fallback = knownCount > 0 ? knownTotal / knownCount : 0;
+        for (int i = 0; i < estimates.length; i++) {
+            if (estimates[i] < 0) {
+                estimates[i] = fallback;
+            }
+        }
+        return estimates;
+    }
+
+    /**
+     * Kahn's algorithm over the dependsOnMethods graph, always picking the
+     * ready method with the lowest priority value and then the longest estimate
+     */
+    private List<IMethodInstance> topologicalLongestFirst(List<IMethodInstance> methods, long[] estimates) {
+        int count = methods.size();
+        List<List<Integer>> dependents = new ArrayList<>();
+        int[] pendingDependencies = new int[count];
+        for (int i = 0; i < count; i++) {
+            dependents.add(new ArrayList<>());
+        }
+
+        for (int i = 0; i < count; i++) {
+            for (String dependency : methods.get(i).getMethod().getMethodsDependedUpon()) {
+                for (int j = 0; j < count; j++) {
+                    if (j != i && matches(methods.get(j).getMethod(), dependency)) {
+                        dependents.get(j).add(i);
+                        pendingDependencies[i]++;
+                    }
+                }
+            }
+        }
+
+        PriorityQueue<Integer> ready = new PriorityQueue<>(Comparator
+                .<Integer>comparingInt(i -> methods.get(i).getMethod().getPriority())
+                .thenComparing(i -> estimates[i], Comparator.reverseOrder())
+                .thenComparingInt(i -> i));
+        for (int i = 0; i < count; i++) {
+            if (pendingDependencies[i] == 0) {
+                ready.add(i);
+            }
+        }
+
+        List<IMethodInstance> ordered = new ArrayList<>(count);
+        boolean[] scheduled = new boolean[count];
+        while (!ready.isEmpty()) {
+            int next = ready.poll();
+            ordered.add(methods.get(next));
+            scheduled[next] = true;
+            for (int dependent : dependents.get(next)) {
+                if (--pendingDependencies[dependent] == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        // Dependency cycles are reported by TestNG itself; keep their declaration order
+        for (int i = 0; i < count; i++) {
+            if (!scheduled[i]) {
+                ordered.add(methods.get(i));
+            }
+        }
+        return ordered;
+    }
+
+    private boolean matches(ITestNGMethod method, String dependency) {
+        String name = method.getQualifiedName();
+        if (name.equals(dependency)) {
+            return true;
+        }
+        try {
+            // dependsOnMethods entries may be regular expressions
+            return name.matches(dependency);
+        } catch (PatternSyntaxException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Simulates greedy list scheduling of the given order on a fixed number
+     * of threads, ignoring dependencies, to estimate the total run time
+     */
+    private long makespan(List<IMethodInstance> order, List<IMethodInstance> methods, long[] estimates, int threads) {
+        PriorityQueue<Long> threadFinishTimes = new PriorityQueue<>();
+        for (int i = 0; i < threads; i++) {
+            threadFinishTimes.add(0L);
+        }
+
+        long makespan = 0;
+        for (IMethodInstance method : order) {
+            long finish = threadFinishTimes.poll() + estimates[methods.indexOf(method)];
+            threadFinishTimes.add(finish);
+            makespan = Math.max(makespan, finish);
+        }
+        return makespan;
+    }
+}
@@ -0,0 +1,94 @@
+package com.mastodon.utils;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects per-test durations from the event bus and writes them as CSV
+ * when the suite finishes, together with a short console summary
+ * Durations of executed tests are also merged into TestDurationHistory for
+ * LongestFirstInterceptor
+ */
+public class MetricsEventConsumer implements TestEventConsumer {
+
+    private static final String METRICS_FILE = "test-output/test-metrics.csv";
+
+    // Only touched by the consumer thread
+    private final List<TestEvent> finishedTests = new ArrayList<>();
+    private final Map<String, Long> busyMillisByThread = new HashMap<>();
+
+    @Override
+    public void onEvent(TestEvent event) {
+        switch (event.getType()) {
+            case TEST_SUCCESS:
+            case TEST_FAILURE:
+            case TEST_SKIPPED:
+            case TEST_DEFERRED:
+            case TEST_FAILED_WITHIN_PERCENTAGE:
+                finishedTests.add(event);
+                busyMillisByThread.merge(event.getThreadName(), Math.max(0, event.getDurationMillis()), Long::sum);
+                break;
+            case SUITE_FINISH:
+                writeMetrics(event.getScopeName());
+                recordHistory();
+                finishedTests.clear();
+                busyMillisByThread.clear();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void recordHistory() {
+        // Skipped tests never ran, so their near-zero durations would skew the estimates;
+        // deferred attempts broke off early and their rerun gives the sample
+        Map<String, Long> samples = new HashMap<>();
+        for (TestEvent event : finishedTests) {
+            if (event.getType() != TestEvent.Type.TEST_SKIPPED && event.getType() != TestEvent.Type.TEST_DEFERRED) {
+                samples.merge(event.getTestName(), Math.max(0, event.getDurationMillis()), Math::max);
+            }
+        }
+        TestDurationHistory.record(samples);
+    }
+
+    private void writeMetrics(String suiteName) {
+        if (finishedTests.isEmpty()) {
+            return;
+        }
+
+        File metricsFile = new File(METRICS_FILE);
+        metricsFile.getParentFile().mkdirs();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(metricsFile))) {
+            writer.println("suite,context,class,method,status,durationMs,thread");
+            for (TestEvent event : finishedTests) {
+                writer.println(String.join(",", suiteName, event.getScopeName(), event.getClassName(),
+                        event.getMethodName(), event.getType().name(), String.valueOf(event.getDurationMillis()),
+                        event.getThreadName()));
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write test metrics: " + e.getMessage());
+        }
+
+        List<Long> durations = new ArrayList<>();
+        for (TestEvent event : finishedTests) {
+            durations.add(Math.max(0, event.getDurationMillis()));
+        }
+        Collections.sort(durations);
+        long total = durations.stream().mapToLong(Long::longValue).sum();
+
+        System.out.println("\n=== Test Duration Metrics (" + suiteName + ") ===");
+        System.out.println("Tests: " + durations.size() + ", Total: " + total + "ms, Average: "
+                + (total / durations.size()) + "ms");
+        System.out.println("p95: " + durations.get((int) Math.ceil(durations.size() * 0.95) - 1) + "ms, Max: "
+                + durations.get(durations.size() - 1) + "ms");
+        System.out.println("Busy time per thread: " + busyMillisByThread);
+        System.out.println("Metrics written to: " + metricsFile.getAbsolutePath());
+    }
+}
@@ -0,0 +1,440 @@
+package com.mastodon.utils;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.testng.IAnnotationTransformer;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.IRetryAnalyzer;
+import org.testng.IResultMap;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestContext;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+import org.testng.TestNG;
+import org.testng.TestRunner;
+import org.testng.annotations.ITestAnnotation;
+import org.testng.internal.annotations.DisabledRetryAnalyzer;
+import org.testng.xml.XmlClass;
+import org.testng.xml.XmlInclude;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Runs tests that failed on the browser or the site once more, in a single
+ * pass at the end of the suite instead of rerunning the whole suite
+ * Every test gets a DeferredRetryAnalyzer unless it declares its own. Failures
+ * that ExceptionHandlingUtils.isRetryable accepts are collected up to the
+ * global rerun.budget; assertion failures are never rerun. When the suite
+ * finishes, the collected methods (and the tests they caused to be skipped)
+ * run sequentially with the &lt;test&gt; parameters they originally had, and
+ * their outcome replaces the deferred attempt in the suite results, so the
+ * reports and the exit code reflect the rerun
+ * Browsers of deferred tests are not closed: BaseTest parks them here and
+ * the rerun pass reuses them, already started and logged in. Parked browsers
+ * give up their ResourceGovernor slot; when the governor has no room to keep
+ * one, it is closed and the rerun opens a new browser instead
+ */
+public class RerunOrchestrator implements IAnnotationTransformer, IInvokedMethodListener, ISuiteListener {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(
+            ConfigUtils.getProperty("rerun.enabled", "true"));
+    private static final int BUDGET = Integer.parseInt(ConfigUtils.getProperty("rerun.budget", "5"));
+
+    private static final Object lock = new Object();
+    // Guarded by lock
+    private static final List<ITestResult> deferred = new ArrayList<>();
+    private static final Deque<WebDriver> warmDrivers = new ArrayDeque<>();
+    private static boolean budgetReported;
+
+    private static volatile boolean rerunning;
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void transform(ITestAnnotation annotation, Class testClass, Constructor testConstructor, Method testMethod) {
+        if (ENABLED && annotation.getRetryAnalyzerClass() == DisabledRetryAnalyzer.class) {
+            annotation.setRetryAnalyzer(DeferredRetryAnalyzer.class);
+        }
+    }
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult testResult) {
+        // TestNG only consults the retry analyzer after reporting the failure, too late to defer it
+        if (!method.isTestMethod() || testResult.getStatus() != ITestResult.FAILURE) {
+            return;
+        }
+        IRetryAnalyzer analyzer = testResult.getMethod().getRetryAnalyzer(testResult);
+        if (analyzer instanceof DeferredRetryAnalyzer) {
+            analyzer.retry(testResult);
+        }
+    }
+
+    /**
+     * Checks whether the end-of-suite rerun pass is running
+     *
+     * @return true while deferred tests are being rerun
+     */
+    public static boolean isRerunPass() {
+        return rerunning;
+    }
+
+    /**
+     * Queues a failed test for the rerun pass if its failure is retryable and budget is left
+     *
+     * @param result Failed attempt
+     * @return true if the test will be rerun
+     */
+    static boolean defer(ITestResult result) {
+        if (!ENABLED || rerunning || !ExceptionHandlingUtils.isRetryable(result.getThrowable())) {
+            return false;
+        }
+        synchronized (lock) {
+            if (deferred.contains(result)) {
+                return true;
+            }
+            if (deferred.size() >= BUDGET) {
+                if (!budgetReported) {
+                    budgetReported = true;
+                    System.out.println("Rerun budget of " + BUDGET + " tests used up, further failures are final");
+                }
+                return false;
+            }
+            deferred.add(result);
+        }
+        System.out.println("Deferred " + result.getMethod().getQualifiedName() + " to the rerun pass: "
+                + result.getThrowable());
+        return true;
+    }
+
+    /**
+     * Keeps the browser of a test that will be rerun, instead of closing it
+     * During the rerun pass every healthy browser is kept for the next rerun
+     *
+     * @param result Result of the test that used the browser
+     * @param driver The test's browser
+     * @return true if the browser was kept and must not be closed
+     */
+    public static boolean parkDriver(ITestResult result, WebDriver driver) {
+        if (!ENABLED || driver == null) {
+            return false;
+        }
+        boolean willRerun;
+        synchronized (lock) {
+            // Depending on the TestNG version the retry analyzer runs before or after @AfterMethod
+            willRerun = rerunning || result.wasRetried() || (result.getStatus() == ITestResult.FAILURE
+                    && ExceptionHandlingUtils.isRetryable(result.getThrowable()) && deferred.size() < BUDGET);
+            if (!willRerun || warmDrivers.size() >= BUDGET || !isAlive(driver)
+                    || !ResourceGovernor.parkSession(driver)) {
+                return false;
+            }
+            warmDrivers.push(driver);
+        }
+        return true;
+    }
+
+    /**
+     * Takes a parked browser for a test of the rerun pass
+     *
+     * @return A live browser, or null outside the rerun pass or when none is parked
+     */
+    public static WebDriver takeWarmDriver() {
+        if (!rerunning) {
+            return null;
+        }
+        synchronized (lock) {
+            while (!warmDrivers.isEmpty()) {
+                WebDriver driver = warmDrivers.pop();
+                if (isAlive(driver)) {
+                    ResourceGovernor.unparkSession(driver);
+                    return driver;
+                }
+                ResourceGovernor.closeSession(driver);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+        runPendingReruns(suite);
+    }
+
+    /**
+     * Runs the rerun pass of a finished suite, once
+     * TestNG calls onFinish(ISuite) in reverse registration order, so listeners
+     * that close their reporting when the suite finishes call this first; the
+     * reruns then reach them whatever order the listeners are registered in
+     *
+     * @param suite Finished suite
+     */
+    public static void runPendingReruns(ISuite suite) {
+        if (!ENABLED || rerunning) {
+            return;
+        }
+
+        List<ITestResult> attempts = new ArrayList<>();
+        synchronized (lock) {
+            for (ITestResult result : new ArrayList<>(deferred)) {
+                if (result.getTestContext().getSuite() == suite) {
+                    attempts.add(result);
+                    deferred.remove(result);
+                }
+            }
+        }
+
+        try {
+            if (!attempts.isEmpty()) {
+                rerunning = true;
+                rerun(suite, attempts);
+            }
+        } finally {
+            rerunning = false;
+            closeWarmDrivers();
+        }
+    }
+
+    private static void rerun(ISuite suite, List<ITestResult> attempts) {
+        addSkippedDependents(attempts);
+        Set<String> names = new LinkedHashSet<>();
+        Map<ITestContext, List<ITestResult>> byContext = new LinkedHashMap<>();
+        for (ITestResult attempt : attempts) {
+            names.add(attempt.getMethod().getQualifiedName());
+            byContext.computeIfAbsent(attempt.getTestContext(), context -> new ArrayList<>()).add(attempt);
+        }
+        System.out.println("Rerun pass: running " + names.size() + " tests again: " + names);
+
+        XmlSuite rerunSuite = suite.getXmlSuite().shallowCopy();
+        rerunSuite.setName(suite.getName() + " (rerun)");
+        rerunSuite.setListeners(new ArrayList<>());
+        rerunSuite.setParallel(XmlSuite.ParallelMode.NONE);
+        for (Map.Entry<ITestContext, List<ITestResult>> entry : byContext.entrySet()) {
+            XmlTest test = new XmlTest(rerunSuite);
+            test.setName(entry.getKey().getName());
+            test.setParameters(entry.getKey().getCurrentXmlTest().getLocalParameters());
+            test.setPreserveOrder(true);
+            test.setXmlClasses(toXmlClasses(entry.getValue()));
+        }
+
+        RerunResults results = new RerunResults(attempts);
+        TestNG testng = new TestNG(false);
+        testng.setXmlSuites(Collections.singletonList(rerunSuite));
+        testng.setOutputDirectory(suite.getOutputDirectory() + "-rerun");
+        testng.addListener(results);
+        testng.addListener(new RerunDependencies(names));
+        testng.run();
+
+        int passed = 0;
+        for (Map.Entry<ITestResult, ITestResult> entry : results.outcomes.entrySet()) {
+            ITestResult attempt = entry.getKey();
+            ITestResult outcome = entry.getValue();
+            ITestContext context = attempt.getTestContext();
+            context.getSkippedTests().removeResult(attempt);
+            resultMap(context, outcome.getStatus()).addResult(outcome);
+            if (outcome.getStatus() == ITestResult.SUCCESS) {
+                passed++;
+            }
+        }
+        System.out.println("Rerun pass: " + passed + " of " + attempts.size() + " tests passed on rerun, "
+                + (results.outcomes.size() - passed) + " failed or skipped again");
+    }
+
+    /**
+     * Adds the tests that were skipped because a deferred test had not passed
+     */
+    private static void addSkippedDependents(List<ITestResult> attempts) {
+        boolean added = true;
+        while (added) {
+            added = false;
+            Set<String> names = new LinkedHashSet<>();
+            for (ITestResult attempt : attempts) {
+                names.add(attempt.getMethod().getQualifiedName());
+            }
+            for (ITestResult attempt : new ArrayList<>(attempts)) {
+                for (ITestResult skipped : attempt.getTestContext().getSkippedTests().getAllResults()) {
+                    if (!attempts.contains(skipped) && !skipped.wasRetried() && Arrays.stream(
+                            skipped.getMethod().getMethodsDependedUpon()).anyMatch(names::contains)) {
+                        attempts.add(skipped);
+                        added = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<XmlClass> toXmlClasses(List<ITestResult> attempts) {
+        Map<String, Set<String>> methodsByClass = new LinkedHashMap<>();
+        for (ITestResult attempt : attempts) {
+            methodsByClass.computeIfAbsent(attempt.getMethod().getRealClass().getName(),
+                    name -> new LinkedHashSet<>()).add(attempt.getMethod().getMethodName());
+        }
+
+        List<XmlClass> xmlClasses = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> entry : methodsByClass.entrySet()) {
+            XmlClass xmlClass = new XmlClass(entry.getKey(), xmlClasses.size(), true);
+            List<XmlInclude> includes = new ArrayList<>();
+            for (String method : entry.getValue()) {
+                XmlInclude include = new XmlInclude(method, includes.size());
+                include.setXmlClass(xmlClass);
+                includes.add(include);
+            }
+            xmlClass.setIncludedMethods(includes);
+            xmlClasses.add(xmlClass);
+        }
+        return xmlClasses;
+    }
+
+    private static IResultMap resultMap(ITestContext context, int status) {
+        switch (status) {
+            case ITestResult.SUCCESS:
+                return context.getPassedTests();
+            case ITestResult.FAILURE:
+                return context.getFailedTests();
+            default:
+                return context.getSkippedTests();
+        }
+    }
+
+    private static boolean isAlive(WebDriver driver) {
+        try {
+            driver.getWindowHandle();
+            return true;
+        } catch (WebDriverException e) {
+            return false;
+        }
+    }
+
+    private static void closeWarmDrivers() {
+        List<WebDriver> drivers;
+        synchronized (lock) {
+            drivers = new ArrayList<>(warmDrivers);
+            warmDrivers.clear();
+        }
+        for (WebDriver driver : drivers) {
+            try {
+                ResourceGovernor.closeSession(driver);
+            } catch (WebDriverException e) {
+                System.err.println("Failed to close parked browser: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Matches rerun results to the deferred attempts and reports them to the
+     * listeners of the original run, so they show up in its reports
+     */
+    private static class RerunResults implements ITestListener {
+
+        private final List<ITestResult> attempts;
+        private final Map<ITestResult, ITestResult> outcomes = new LinkedHashMap<>();
+
+        RerunResults(List<ITestResult> attempts) {
+            this.attempts = attempts;
+        }
+
+        @Override
+        public void onTestStart(ITestResult result) {
+            // Listeners find what they stored on the attempt, e.g. its report node
+            ITestResult attempt = attemptOf(result);
+            if (attempt != null) {
+                for (String name : attempt.getAttributeNames()) {
+                    if (result.getAttribute(name) == null) {
+                        result.setAttribute(name, attempt.getAttribute(name));
+                    }
+                }
+            }
+            forward(result, listener -> listener.onTestStart(result));
+        }
+
+        @Override
+        public void onTestSuccess(ITestResult result) {
+            finish(result, listener -> listener.onTestSuccess(result));
+        }
+
+        @Override
+        public void onTestFailure(ITestResult result) {
+            finish(result, listener -> listener.onTestFailure(result));
+        }
+
+        @Override
+        public void onTestSkipped(ITestResult result) {
+            finish(result, listener -> listener.onTestSkipped(result));
+        }
+
+        private void finish(ITestResult result, Consumer<ITestListener> event) {
+            ITestResult attempt = attemptOf(result);
+            if (attempt != null) {
+                outcomes.put(attempt, result);
+                forward(result, event);
+            }
+        }
+
+        private void forward(ITestResult result, Consumer<ITestListener> event) {
+            ITestResult attempt = attemptOf(result);
+            if (attempt == null || !(attempt.getTestContext() instanceof TestRunner)) {
+                return;
+            }
+            for (ITestListener listener : ((TestRunner) attempt.getTestContext()).getTestListeners()) {
+                event.accept(listener);
+            }
+        }
+
+        /**
+         * Data-driven tests rerun every row; only the rows that were deferred count
+         */
+        private ITestResult attemptOf(ITestResult result) {
+            for (ITestResult attempt : attempts) {
+                if (attempt.getMethod().getQualifiedName().equals(result.getMethod().getQualifiedName())
+                        && Arrays.deepEquals(attempt.getParameters(), result.getParameters())) {
+                    return attempt;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Keeps only the dependencies between rerun tests; everything else they
+     * depended on already passed in the main run
+     */
+    private static class RerunDependencies implements IAnnotationTransformer {
+
+        private final Set<String> names;
+
+        RerunDependencies(Set<String> names) {
+            this.names = names;
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public void transform(ITestAnnotation annotation, Class testClass, Constructor testConstructor,
+                Method testMethod) {
+            if (testMethod == null) {
+                return;
+            }
+            List<String> dependsOnMethods = new ArrayList<>();
+            for (String dependency : annotation.getDependsOnMethods()) {
+                String simpleName = dependency.substring(dependency.lastIndexOf('.') + 1);
+                if (names.stream().anyMatch(name -> name.endsWith("." + simpleName))) {
+                    dependsOnMethods.add(dependency);
+                }
+            }
+            annotation.setDependsOnMethods(dependsOnMethods.toArray(new String[0]));
+            annotation.setDependsOnGroups(new String[0]);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.mastodon.utils;
+
+import org.openqa.selenium.WebDriver;
+import org.testng.IAlterSuiteListener;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Admits browser sessions only while the machine has headroom for them
+ * Capacity is measured at runtime from the available cores, the available
+ * memory and the memory actually used per browser (proportional set size of
+ * the browser and driver processes started by this JVM). Sessions opened
+ * through openSession() wait while the machine is saturated, and the static
+ * thread counts in testng.xml are replaced with the measured capacity when
+ * the suite starts. Parked sessions (idle browsers kept for a later rerun)
+ * do not count against admission; a session is only parked while the parked
+ * ones stay below the capacity, so they cannot starve running tests
+ * Worker JVMs of a work-stealing run share the machine, so each is given its
+ * share of the cores through the governor.cores system property
+ */
+public class ResourceGovernor implements IAlterSuiteListener, ISuiteListener {
+
+    /** System property with the cores this JVM may fill with browsers; defaults to all of them */
+    public static final String CORES_PROPERTY = "governor.cores";
+
+    private static final boolean ENABLED = Boolean.parseBoolean(
+            ConfigUtils.getProperty("governor.enabled", "true"));
+    private static final double SESSIONS_PER_CORE = Double.parseDouble(
+            ConfigUtils.getProperty("governor.sessionsPerCore", "1.0"));
+    private static final long MEMORY_RESERVE_MB = Long.parseLong(
+            ConfigUtils.getProperty("governor.memoryReserveMb", "1024"));
+    private static final long INITIAL_BROWSER_MB = Long.parseLong(
+            ConfigUtils.getProperty("governor.browserMemoryMb", "500"));
+    private static final long MAX_WAIT_MILLIS = Long.parseLong(
+            ConfigUtils.getProperty("governor.maxWaitSeconds", "300")) * 1000;
+
+    private static final int CORES = Integer.getInteger(CORES_PROPERTY,
+            Runtime.getRuntime().availableProcessors());
+
+    private static final Object lock = new Object();
+    private static final Set<WebDriver> sessions = Collections.newSetFromMap(new IdentityHashMap<>());
+    private static final Set<WebDriver> parked = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // Guarded by lock
+    private static int launching;
+    private static int admitted;
+    private static int peak;
+    private static int throttled;
+    private static long waitedMillis;
+    private static long browserMemoryMb = INITIAL_BROWSER_MB;
+
+    /**
+     * Opens a browser session once there is headroom for it
+     *
+     * @param factory Creates the WebDriver, e.g. () -&gt; new ChromeDriver(options)
+     * @return The new WebDriver
+     */
+    public static WebDriver openSession(Supplier<WebDriver> factory) {
+        if (!ENABLED) {
+            return factory.get();
+        }
+
+        admit();
+        WebDriver driver;
+        try {
+            driver = factory.get();
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                launching--;
+                lock.notifyAll();
+            }
+            throw e;
+        }
+
+        synchronized (lock) {
+            launching--;
+            sessions.add(driver);
+        }
+        return driver;
+    }
+
+    /**
+     * Quits a browser session and frees its slot
+     *
+     * @param driver WebDriver to quit, may be null
+     */
+    public static void closeSession(WebDriver driver) {
+        if (driver == null) {
+            return;
+        }
+        try {
+            driver.quit();
+        } finally {
+            synchronized (lock) {
+                parked.remove(driver);
+                if (sessions.remove(driver)) {
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Frees the slot of a session that stays open but idle, e.g. a browser kept for the rerun pass
+     * Refused when the parked sessions would no longer leave room for a running one
+     *
+     * @param driver WebDriver opened through openSession
+     * @return true if the session is parked and may stay open
+     */
+    public static boolean parkSession(WebDriver driver) {
+        if (!ENABLED) {
+            return true;
+        }
+        synchronized (lock) {
+            if (!sessions.contains(driver)) {
+                return false;
+            }
+            if (!parked.contains(driver)) {
+                if (parked.size() + 1 >= capacity(availableMemoryMb())) {
+                    return false;
+                }
+                parked.add(driver);
+                lock.notifyAll();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes a parked session back into use; it counts against admission again
+     *
+     * @param driver WebDriver passed to parkSession
+     */
+    public static void unparkSession(WebDriver driver) {
+        synchronized (lock) {
+            parked.remove(driver);
+        }
+    }
+
+    @Override
+    public void alter(List<XmlSuite> suites) {
+        if (!ENABLED) {
+            return;
+        }
+
+        int capacity;
+        synchronized (lock) {
+            capacity = capacity(availableMemoryMb());
+        }
+        System.out.println("Resource governor: " + CORES + " cores, "
+                + availableMemoryMb() + "MB available, ~" + browserMemoryMb + "MB per browser -> " + capacity
+                + " concurrent browser sessions");
+
+        for (XmlSuite suite : suites) {
+            // ParallelMode.isParallel() is false for TESTS, so compare against NONE
+            if (suite.getParallel() != null && suite.getParallel() != XmlSuite.ParallelMode.NONE) {
+                suite.setThreadCount(adjust(suite.getName(), suite.getThreadCount(), capacity));
+            }
+            for (XmlTest test : suite.getTests()) {
+                if (test.getParallel() != null && test.getParallel().isParallel()) {
+                    test.setThreadCount(adjust(test.getName(), test.getThreadCount(), capacity));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+        if (!ENABLED) {
+            return;
+        }
+        synchronized (lock) {
+            System.out.println("Resource governor: " + admitted + " browser sessions admitted, peak " + peak
+                    + " concurrent, throttled " + throttled + " times for " + waitedMillis + "ms in total");
+        }
+    }
+
+    private static int adjust(String name, int threadCount, int capacity) {
+        if (capacity < threadCount) {
+            System.out.println("Resource governor: throttled '" + name + "' thread-count " + threadCount + " -> "
+                    + capacity);
+        } else if (capacity > threadCount) {
+            System.out.println("Resource governor: expanded '" + name + "' thread-count " + threadCount + " -> "
+                    + capacity);
+        }
+        return capacity;
+    }
+
+    private static void admit() {
+        synchronized (lock) {
+            long start = System.currentTimeMillis();
+            boolean waiting = false;
+            while (true) {
+                long availableMb = availableMemoryMb();
+                int active = activeSessions();
+                if (active == 0 || active < capacity(availableMb)) {
+                    break;
+                }
+
+                long waited = System.currentTimeMillis() - start;
+                if (waited >= MAX_WAIT_MILLIS) {
+                    System.out.println("Resource governor: no headroom after " + waited / 1000
+                            + "s, admitting session anyway");
+                    break;
+                }
+                if (!waiting) {
+                    waiting = true;
+                    throttled++;
+                    System.out.println("Resource governor: throttled new session on "
+                            + Thread.currentThread().getName() + " (" + active + " active, " + availableMb
+                            + "MB available, ~" + browserMemoryMb + "MB per browser)");
+                }
+                try {
+                    // Re-measure periodically; memory can free up without a session closing
+                    lock.wait(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            waitedMillis += System.currentTimeMillis() - start;
+            launching++;
+            admitted++;
+            peak = Math.max(peak, activeSessions());
+        }
+    }
+
+    /**
+     * Sessions that are running or launching; must be called holding the lock
+     */
+    private static int activeSessions() {
+        return sessions.size() - parked.size() + launching;
+    }
+
+    /**
+     * Number of active sessions the machine can hold right now, counting the
+     * sessions already running; parked browsers only count through the memory
+     * they hold; must be called holding the lock
+     */
+    private static int capacity(long availableMb) {
+        long measuredMb = browserProcessesMb();
+        if (measuredMb > 0 && !sessions.isEmpty()) {
+            browserMemoryMb = Math.max(1, measuredMb / sessions.size());
+        }
+
+        int coreLimit = Math.max(1, (int) (CORES * SESSIONS_PER_CORE));
+        // Launching browsers have not allocated their memory yet
+        long freeForBrowsersMb = availableMb - MEMORY_RESERVE_MB - launching * browserMemoryMb;
+        int memoryLimit = activeSessions() + (int) Math.max(0, freeForBrowsersMb / browserMemoryMb);
+        return Math.max(1, Math.min(coreLimit, memoryLimit));
+    }
+
+    private static long availableMemoryMb() {
+        // MemAvailable includes reclaimable page cache, unlike the JVM's free memory figure
+        long availableKb = readKb(Paths.get("/proc/meminfo"), "MemAvailable:");
+        if (availableKb > 0) {
+            return availableKb / 1024;
+        }
+        // Without /proc (e.g. macOS or Windows) the JVM's heap limit is the only portable bound
+        return Runtime.getRuntime().maxMemory() / (1024 * 1024);
+    }
+
+    /**
+     * Memory used by the driver and browser processes started by this JVM;
+     * PSS splits shared pages between Chrome's processes instead of counting them once per process
+     */
+    private static long browserProcessesMb() {
+        return ProcessHandle.current().descendants().mapToLong(process -> {
+            Path proc = Paths.get("/proc", String.valueOf(process.pid()));
+            long pssKb = readKb(proc.resolve("smaps_rollup"), "Pss:");
+            return pssKb > 0 ? pssKb : readKb(proc.resolve("status"), "VmRSS:");
+        }).sum() / 1024;
+    }
+
+    private static long readKb(Path file, String field) {
+        if (!Files.isReadable(file)) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(file)) {
+                if (line.startsWith(field)) {
+                    return Long.parseLong(line.substring(field.length()).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Process exited or the file format is unexpected
+        }
+        return -1;
+    }
+}
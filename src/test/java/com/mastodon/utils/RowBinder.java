@@ -0,0 +1,179 @@
+package com.mastodon.utils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Binds data rows onto plain Java objects instead of a map per row
+ * Every instance field of the target type is bound to the column named by
+ * its DataColumn annotation, or by the field name. Column positions and value
+ * converters are resolved once from the header row, so binding a row is one
+ * array read, one conversion and one field write per field. Values are
+ * trimmed; empty values leave primitives at their default and other fields null.
+ * Supported field types: String, int, long, double, boolean (and their
+ * wrappers), enums (matched ignoring case) and LocalDate (ISO yyyy-MM-dd)
+ *
+ * @param <T> Row type, with a no-argument constructor
+ */
+public final class RowBinder<T> {
+
+    private final Class<T> type;
+    private final Constructor<T> constructor;
+    private final Field[] fields;
+    private final String[] columnNames;
+    private final int[] columns;
+    private final Function<String, Object>[] converters;
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private RowBinder(Class<T> type, String[] headers) {
+        this.type = type;
+        try {
+            constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(type.getSimpleName() + " needs a no-argument constructor", e);
+        }
+
+        List<Field> bound = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                field.setAccessible(true);
+                bound.add(field);
+            }
+        }
+
+        fields = bound.toArray(new Field[0]);
+        columnNames = new String[fields.length];
+        columns = new int[fields.length];
+        converters = new Function[fields.length];
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < fields.length; i++) {
+            DataColumn column = fields[i].getAnnotation(DataColumn.class);
+            columnNames[i] = column != null ? column.value() : fields[i].getName();
+            columns[i] = indexOf(headers, columnNames[i]);
+            converters[i] = converter(fields[i].getType());
+            if (columns[i] == -1) {
+                missing.add(columnNames[i]);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Columns " + missing + " required by " + type.getSimpleName()
+                    + " are not in the header row");
+        }
+    }
+
+    /**
+     * Creates a binder for rows under the given header row
+     *
+     * @param type    Row type
+     * @param headers Header row; values are trimmed and null cells are ignored
+     * @return Binder
+     * @throws IllegalArgumentException if a bound column is missing or a field type is not supported
+     */
+    public static <T> RowBinder<T> of(Class<T> type, String[] headers) {
+        return new RowBinder<>(type, headers);
+    }
+
+    /**
+     * Binds one data row
+     *
+     * @param row Cell values in header order; short rows bind missing cells as empty
+     * @return New row object
+     * @throws IllegalArgumentException if a value cannot be converted to its field type
+     */
+    public T bind(String[] row) {
+        T target;
+        try {
+            target = constructor.newInstance();
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Cannot create " + type.getSimpleName(), e);
+        }
+
+        for (int i = 0; i < fields.length; i++) {
+            String value = columns[i] < row.length && row[columns[i]] != null ? row[columns[i]].trim() : "";
+            if (value.isEmpty()) {
+                continue;
+            }
+            try {
+                fields[i].set(target, converters[i].apply(value));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot set " + fields[i], e);
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Cannot convert '" + value + "' in column '" + columnNames[i]
+                        + "' to " + fields[i].getType().getSimpleName(), e);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Binds rows as the iterator advances
+     *
+     * @param rows Data rows, without the header row
+     * @return Iterator over the bound rows
+     */
+    public Iterator<T> bindAll(Iterator<String[]> rows) {
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return bind(rows.next());
+            }
+        };
+    }
+
+    private static int indexOf(String[] headers, String columnName) {
+        for (int i = 0; i < headers.length; i++) {
+            if (headers[i] != null && headers[i].trim().equals(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Function<String, Object> converter(Class<?> fieldType) {
+        if (fieldType == String.class) {
+            return value -> value;
+        }
+        if (fieldType == int.class || fieldType == Integer.class) {
+            return Integer::valueOf;
+        }
+        if (fieldType == long.class || fieldType == Long.class) {
+            return Long::valueOf;
+        }
+        if (fieldType == double.class || fieldType == Double.class) {
+            return Double::valueOf;
+        }
+        if (fieldType == boolean.class || fieldType == Boolean.class) {
+            return value -> {
+                if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+                    return Boolean.valueOf(value);
+                }
+                throw new IllegalArgumentException("not a boolean");
+            };
+        }
+        if (fieldType.isEnum()) {
+            Class<? extends Enum> enumType = (Class<? extends Enum>) fieldType;
+            return value -> Enum.valueOf(enumType, value.toUpperCase(Locale.ROOT));
+        }
+        if (fieldType == LocalDate.class) {
+            return LocalDate::parse;
+        }
+        throw new IllegalArgumentException("Unsupported field type " + fieldType.getName());
+    }
+}
@@ -0,0 +1,332 @@
+package com.mastodon.utils;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.Event;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.json.Json;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records a Chrome DevTools screencast into a bounded in-memory ring buffer
+ * One recorder is kept per test thread; only failed tests pay for encoding
+ * the buffered frames into an animated GIF clip
+ */
+public class ScreencastRecorder {
+
+    private static final String SCREENCAST_DIR = "test-output/screencasts";
+    private static final ThreadLocal<ScreencastRecorder> current = new ThreadLocal<>();
+    private static final ConcurrentLinkedQueue<CompletableFuture<String>> pendingEncodings = new ConcurrentLinkedQueue<>();
+    private static final ExecutorService encoder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "screencast-encoder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final DevTools devTools;
+    private final Frame[] frames;
+    private final long windowMillis;
+    private int head;
+    private int size;
+    private volatile boolean recording;
+
+    /**
+     * Single captured frame with its capture time
+     */
+    private static class Frame {
+        private final byte[] jpeg;
+        private final long timestampMillis;
+
+        private Frame(byte[] jpeg, long timestampMillis) {
+            this.jpeg = jpeg;
+            this.timestampMillis = timestampMillis;
+        }
+    }
+
+    private ScreencastRecorder(DevTools devTools, int maxFrames, long windowMillis) {
+        this.devTools = devTools;
+        this.frames = new Frame[maxFrames];
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Starts a screencast for the current test thread if enabled and supported
+     *
+     * @param driver WebDriver instance
+     */
+    public static void start(WebDriver driver) {
+        release();
+        if (!isEnabled() || !(driver instanceof HasDevTools)) {
+            return;
+        }
+
+        try {
+            DevTools devTools = ((HasDevTools) driver).getDevTools();
+            devTools.createSessionIfThereIsNotOne();
+
+            int bufferSeconds = Integer.parseInt(ConfigUtils.getProperty("screencast.bufferSeconds", "10"));
+            int maxFrames = Integer.parseInt(ConfigUtils.getProperty("screencast.maxFrames", "60"));
+            ScreencastRecorder recorder = new ScreencastRecorder(devTools, maxFrames, bufferSeconds * 1000L);
+
+            devTools.addListener(
+                    new Event<Map<String, Object>>("Page.screencastFrame", input -> input.read(Json.MAP_TYPE)),
+                    recorder::onFrame);
+
+            Map<String, Object> params = new HashMap<>();
+            params.put("format", "jpeg");
+            params.put("quality", Integer.parseInt(ConfigUtils.getProperty("screencast.quality", "40")));
+            params.put("maxWidth", Integer.parseInt(ConfigUtils.getProperty("screencast.maxWidth", "800")));
+            params.put("maxHeight", Integer.parseInt(ConfigUtils.getProperty("screencast.maxHeight", "600")));
+            params.put("everyNthFrame", Integer.parseInt(ConfigUtils.getProperty("screencast.everyNthFrame", "2")));
+            devTools.send(new Command<Void>("Page.startScreencast", params));
+
+            recorder.recording = true;
+            current.set(recorder);
+        } catch (Exception e) {
+            System.err.println("Screencast could not be started: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the current thread's screencast and encodes the buffered frames
+     * asynchronously into a GIF clip
+     *
+     * @param testName Name of the failed test
+     * @return Path the clip will be written to, null if nothing was recorded
+     */
+    public static String captureFailureClip(String testName) {
+        ScreencastRecorder recorder = current.get();
+        if (recorder == null) {
+            return null;
+        }
+
+        recorder.stop();
+        List<Frame> snapshot = recorder.drainFrames();
+        if (snapshot.isEmpty()) {
+            return null;
+        }
+
+        File screencastDir = new File(SCREENCAST_DIR);
+        if (!screencastDir.exists()) {
+            screencastDir.mkdirs();
+        }
+
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+        File clip = new File(screencastDir,
+                String.format("%s_%s.gif", testName.replaceAll("[^a-zA-Z0-9]", "_"), timestamp));
+
+        CompletableFuture<String> encoding = CompletableFuture.supplyAsync(() -> {
+            try {
+                writeGif(snapshot, clip);
+                return clip.getAbsolutePath();
+            } catch (IOException e) {
+                System.err.println("Failed to encode screencast clip: " + e.getMessage());
+                return null;
+            }
+        }, encoder);
+        pendingEncodings.add(encoding);
+
+        return clip.getAbsolutePath();
+    }
+
+    /**
+     * Stops the current thread's screencast and drops its frames without any
+     * disk I/O
+     */
+    public static void discard() {
+        ScreencastRecorder recorder = current.get();
+        if (recorder != null) {
+            recorder.stop();
+            recorder.drainFrames();
+        }
+    }
+
+    /**
+     * Stops and forgets the current thread's recorder, e.g. before the driver
+     * quits
+     */
+    public static void release() {
+        discard();
+        current.remove();
+    }
+
+    /**
+     * Waits for pending clip encodings so they exist before the report is
+     * flushed
+     *
+     * @param timeoutSeconds Maximum time to wait
+     */
+    public static void awaitPendingEncodings(long timeoutSeconds) {
+        CompletableFuture<String> encoding;
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        while ((encoding = pendingEncodings.poll()) != null) {
+            try {
+                encoding.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                System.err.println("Screencast encoding did not complete: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Whether screencast recording is enabled in config.properties
+     *
+     * @return true if enabled
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(ConfigUtils.getProperty("screencast.enabled", "true"));
+    }
+
+    private void onFrame(Map<String, Object> frame) {
+        Object sessionId = frame.get("sessionId");
+        try {
+            devTools.send(new Command<Void>("Page.screencastFrameAck",
+                    Map.of("sessionId", sessionId)).doesNotSendResponse());
+        } catch (Exception e) {
+            // Ack failures only mean Chrome stops sending frames
+        }
+
+        if (!recording) {
+            return;
+        }
+
+        byte[] jpeg = Base64.getDecoder().decode((String) frame.get("data"));
+        add(new Frame(jpeg, System.currentTimeMillis()));
+    }
+
+    private synchronized void add(Frame frame) {
+        int tail = (head + size) % frames.length;
+        frames[tail] = frame;
+        if (size < frames.length) {
+            size++;
+        } else {
+            head = (head + 1) % frames.length;
+        }
+
+        // Evict frames that fell out of the time window
+        while (size > 1 && frame.timestampMillis - frames[head].timestampMillis > windowMillis) {
+            frames[head] = null;
+            head = (head + 1) % frames.length;
+            size--;
+        }
+    }
+
+    private synchronized List<Frame> drainFrames() {
+        List<Frame> snapshot = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % frames.length;
+            snapshot.add(frames[index]);
+            frames[index] = null;
+        }
+        head = 0;
+        size = 0;
+        return snapshot;
+    }
+
+    private void stop() {
+        if (!recording) {
+            return;
+        }
+        recording = false;
+        try {
+            devTools.send(new Command<Void>("Page.stopScreencast", Map.of()));
+        } catch (Exception e) {
+            System.err.println("Failed to stop screencast: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Encodes frames into a looping animated GIF using the frame timestamps as
+     * delays
+     *
+     * @param frames Frames in capture order
+     * @param output Destination file
+     * @throws IOException if the clip cannot be written
+     */
+    private static void writeGif(List<Frame> frames, File output) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            writer.prepareWriteSequence(null);
+
+            for (int i = 0; i < frames.size(); i++) {
+                BufferedImage image = ImageIO.read(new ByteArrayInputStream(frames.get(i).jpeg));
+                if (image == null) {
+                    continue;
+                }
+                long delayMillis = i + 1 < frames.size()
+                        ? frames.get(i + 1).timestampMillis - frames.get(i).timestampMillis
+                        : 1000;
+
+                IIOMetadata metadata = writer.getDefaultImageMetadata(
+                        ImageTypeSpecifier.createFromRenderedImage(image), null);
+                configureFrameMetadata(metadata, delayMillis, i == 0);
+                writer.writeToSequence(new IIOImage(image, null, metadata), null);
+            }
+
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static void configureFrameMetadata(IIOMetadata metadata, long delayMillis, boolean firstFrame)
+            throws IOException {
+        String format = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+
+        IIOMetadataNode control = getOrCreateNode(root, "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", String.valueOf(Math.max(1, delayMillis / 10)));
+        control.setAttribute("transparentColorIndex", "0");
+
+        if (firstFrame) {
+            // NETSCAPE2.0 extension makes the clip loop forever
+            IIOMetadataNode extensions = getOrCreateNode(root, "ApplicationExtensions");
+            IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            loop.setUserObject(new byte[] { 0x1, 0, 0 });
+            extensions.appendChild(loop);
+        }
+
+        metadata.setFromTree(format, root);
+    }
+
+    private static IIOMetadataNode getOrCreateNode(IIOMetadataNode root, String nodeName) {
+        for (int i = 0; i < root.getLength(); i++) {
+            if (root.item(i).getNodeName().equalsIgnoreCase(nodeName)) {
+                return (IIOMetadataNode) root.item(i);
+            }
+        }
+        IIOMetadataNode node = new IIOMetadataNode(nodeName);
+        root.appendChild(node);
+        return node;
+    }
+}
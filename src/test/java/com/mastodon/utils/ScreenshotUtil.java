@@ -54,16 +54,14 @@ public class ScreenshotUtil {
             // Copy screenshot to destination
             FileUtils.copyFile(sourceFile, finalDestination);
             
-            System.out.println("Screenshot saved: " + finalDestination.getAbsolutePath());
+            TestLog.info("Screenshot saved: " + finalDestination.getAbsolutePath());
             return finalDestination.getAbsolutePath();
             
         } catch (IOException e) {
-            System.err.println("Failed to save screenshot: " + e.getMessage());
-            e.printStackTrace();
+            TestLog.error("Failed to save screenshot: " + e.getMessage(), e);
             return null;
         } catch (Exception e) {
-            System.err.println("Unexpected error while taking screenshot: " + e.getMessage());
-            e.printStackTrace();
+            TestLog.error("Unexpected error while taking screenshot: " + e.getMessage(), e);
             return null;
         }
     }
@@ -104,16 +102,14 @@ public class ScreenshotUtil {
             // Copy screenshot to destination
             FileUtils.copyFile(sourceFile, finalDestination);
             
-            System.out.println("Screenshot saved: " + finalDestination.getAbsolutePath());
+            TestLog.info("Screenshot saved: " + finalDestination.getAbsolutePath());
             return finalDestination.getAbsolutePath();
             
         } catch (IOException e) {
-            System.err.println("Failed to save screenshot: " + e.getMessage());
-            e.printStackTrace();
+            TestLog.error("Failed to save screenshot: " + e.getMessage(), e);
             return null;
         } catch (Exception e) {
-            System.err.println("Unexpected error while taking screenshot: " + e.getMessage());
-            e.printStackTrace();
+            TestLog.error("Unexpected error while taking screenshot: " + e.getMessage(), e);
             return null;
         }
     }
@@ -0,0 +1,107 @@
+package com.mastodon.utils;
+
+/**
+ * Shard of the suite this JVM runs, from -Dshard=i/N (1-based, e.g. -Dshard=2/4)
+ * Every shard computes the same split from the same method list and duration
+ * history, so shards on different machines need no coordination
+ */
+public class Shard {
+
+    public static final String PROPERTY = "shard";
+    public static final String SHARDS_DIR = "test-output/shards";
+    // Set on work-stealing worker JVMs, which report like shards of a dynamic split
+    public static final String REPORT_DIR_PROPERTY = "shard.reportDir";
+
+    private static final Shard current = parse(System.getProperty(PROPERTY));
+
+    private final int index;
+    private final int count;
+
+    private Shard(int index, int count) {
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * Gets the shard of this JVM
+     *
+     * @return Current shard, or null when the suite is not sharded
+     */
+    public static Shard current() {
+        return current;
+    }
+
+    /**
+     * Checks whether this JVM runs only a shard of the suite
+     *
+     * @return true if -Dshard was given with more than one shard
+     */
+    public static boolean isActive() {
+        return current != null && current.count > 1;
+    }
+
+    /**
+     * Gets the directory for this JVM's partial report, which ShardReportMerger
+     * later combines with the others
+     *
+     * @return Directory path, or null when this JVM runs the whole suite
+     */
+    public static String reportDir() {
+        if (isActive()) {
+            return current.getOutputDir();
+        }
+        return System.getProperty(REPORT_DIR_PROPERTY);
+    }
+
+    private static Shard parse(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+
+        String[] parts = value.trim().split("/");
+        try {
+            if (parts.length == 2) {
+                int index = Integer.parseInt(parts[0].trim());
+                int count = Integer.parseInt(parts[1].trim());
+                if (count >= 1 && index >= 1 && index <= count) {
+                    return new Shard(index, count);
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid -D" + PROPERTY + "=" + value + ", expected i/N with 1 <= i <= N");
+    }
+
+    /**
+     * Gets the 1-based index of this shard
+     *
+     * @return Shard index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the total number of shards
+     *
+     * @return Shard count
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the directory this shard writes its results and report fragment to
+     *
+     * @return Directory path
+     */
+    public String getOutputDir() {
+        return SHARDS_DIR + "/shard-" + index + "-of-" + count;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
@@ -0,0 +1,167 @@
+package com.mastodon.utils;
+
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.IReporter;
+import org.testng.ISuite;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
+import org.testng.reporters.XMLReporter;
+import org.testng.xml.XmlSuite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps only this JVM's share of every &lt;test&gt; when running with -Dshard=i/N
+ * Methods are bin-packed longest-processing-time first over the recorded
+ * durations (TestDurationHistory), so every shard gets roughly the same
+ * expected wall time. Methods linked by dependencies are packed as one unit
+ * so they always land on the same shard. The history is read once per JVM,
+ * before the first &lt;test&gt; is split, and shards do not record to it, so
+ * every shard splits every &lt;test&gt; by the same durations
+ * As a reporter it writes the shard's testng-results.xml next to its Extent
+ * report fragment, where ShardReportMerger picks both up
+ */
+public class ShardInterceptor implements IMethodInterceptor, IReporter {
+
+    private static Map<String, Long> history;
+
+    @Override
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        if (!Shard.isActive() || methods.isEmpty()) {
+            return methods;
+        }
+
+        Shard shard = Shard.current();
+        List<List<Integer>> units = dependencyUnits(methods);
+        long[] estimates = estimateDurations(methods, history());
+        long[] unitEstimates = new long[units.size()];
+        String[] unitKeys = new String[units.size()];
+        for (int u = 0; u < units.size(); u++) {
+            for (int i : units.get(u)) {
+                unitEstimates[u] += estimates[i];
+            }
+            unitKeys[u] = methods.get(units.get(u).get(0)).getMethod().getQualifiedName();
+        }
+
+        // Deterministic order: every shard must compute the same assignment
+        List<Integer> order = new ArrayList<>();
+        for (int u = 0; u < units.size(); u++) {
+            order.add(u);
+        }
+        order.sort(Comparator.<Integer>comparingLong(u -> unitEstimates[u]).reversed()
+                .thenComparing(u -> unitKeys[u]));
+
+        long[] loads = new long[shard.getCount()];
+        boolean[] keep = new boolean[methods.size()];
+        for (int u : order) {
+            int target = 0;
+            for (int s = 1; s < loads.length; s++) {
+                if (loads[s] < loads[target]) {
+                    target = s;
+                }
+            }
+            loads[target] += unitEstimates[u];
+            if (target == shard.getIndex() - 1) {
+                units.get(u).forEach(i -> keep[i] = true);
+            }
+        }
+
+        List<IMethodInstance> kept = new ArrayList<>();
+        for (int i = 0; i < methods.size(); i++) {
+            if (keep[i]) {
+                kept.add(methods.get(i));
+            }
+        }
+        System.out.println("Shard " + shard + " of " + context.getName() + ": " + kept.size() + " of "
+                + methods.size() + " methods, estimated shard loads (ms) " + Arrays.toString(loads));
+        return kept;
+    }
+
+    @Override
+    public void generateReport(List<XmlSuite> xmlSuites, List<ISuite> suites, String outputDirectory) {
+        if (Shard.isActive()) {
+            new XMLReporter().generateReport(xmlSuites, suites, Shard.current().getOutputDir());
+        }
+    }
+
+    private static synchronized Map<String, Long> history() {
+        if (history == null) {
+            history = TestDurationHistory.load();
+        }
+        return history;
+    }
+
+    private long[] estimateDurations(List<IMethodInstance> methods, Map<String, Long> history) {
+        long[] estimates = new long[methods.size()];
+        long knownTotal = 0;
+        int knownCount = 0;
+        for (int i = 0; i < methods.size(); i++) {
+            Long duration = history.get(methods.get(i).getMethod().getQualifiedName());
+            estimates[i] = duration != null ? duration : -1;
+            if (duration != null) {
+                knownTotal += duration;
+                knownCount++;
+            }
+        }
+
+        // Without history every method weighs the same, which still splits evenly by count
+        long fallback = knownCount > 0 ? Math.max(1, knownTotal / knownCount) : 1;
+        for (int i = 0; i < estimates.length; i++) {
+            estimates[i] = estimates[i] < 0 ? fallback : Math.max(1, estimates[i]);
+        }
+        return estimates;
+    }
+
+    /**
+     * Groups method indexes into units connected by dependsOnMethods or dependsOnGroups
+     */
+    private List<List<Integer>> dependencyUnits(List<IMethodInstance> methods) {
+        int[] parents = new int[methods.size()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+
+        for (int i = 0; i < methods.size(); i++) {
+            ITestNGMethod method = methods.get(i).getMethod();
+            List<String> dependsOnMethods = Arrays.asList(method.getMethodsDependedUpon());
+            List<String> dependsOnGroups = Arrays.asList(method.getGroupsDependedUpon());
+            if (dependsOnMethods.isEmpty() && dependsOnGroups.isEmpty()) {
+                continue;
+            }
+            for (int j = 0; j < methods.size(); j++) {
+                ITestNGMethod candidate = methods.get(j).getMethod();
+                if (dependsOnMethods.contains(candidate.getQualifiedName())
+                        || Arrays.stream(candidate.getGroups()).anyMatch(dependsOnGroups::contains)) {
+                    parents[find(parents, i)] = find(parents, j);
+                }
+            }
+        }
+
+        Map<Integer, List<Integer>> units = new HashMap<>();
+        List<List<Integer>> ordered = new ArrayList<>();
+        for (int i = 0; i < methods.size(); i++) {
+            List<Integer> unit = units.get(find(parents, i));
+            if (unit == null) {
+                unit = new ArrayList<>();
+                units.put(find(parents, i), unit);
+                ordered.add(unit);
+            }
+            unit.add(i);
+        }
+        return ordered;
+    }
+
+    private int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+}
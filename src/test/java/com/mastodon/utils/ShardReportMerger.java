@@ -0,0 +1,172 @@
+package com.mastodon.utils;
+
+import com.aventstack.extentreports.ExtentReports;
+import com.aventstack.extentreports.reporter.ExtentSparkReporter;
+import com.aventstack.extentreports.reporter.configuration.Theme;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Combines the reports of all shards in test-output/shards into
+ * test-output/merged: one ExtentReport.html rebuilt from the shards' JSON
+ * archives and one testng-results.xml with the totals summed
+ * Run after all shards finished, e.g. mvn test-compile exec:java -Pmerge-shards
+ */
+public class ShardReportMerger {
+
+    private static final String MERGED_DIR = "test-output/merged";
+    private static final String[] COUNTERS = {"total", "passed", "failed", "skipped", "ignored"};
+
+    public static void main(String[] args) throws Exception {
+        File shardsDir = new File(args.length > 0 ? args[0] : Shard.SHARDS_DIR);
+        File[] shardDirs = shardsDir.listFiles(File::isDirectory);
+        if (shardDirs == null || shardDirs.length == 0) {
+            System.err.println("No shard reports found in " + shardsDir);
+            System.exit(1);
+        }
+        Arrays.sort(shardDirs);
+
+        File mergedDir = new File(MERGED_DIR);
+        mergedDir.mkdirs();
+        int extentCount = mergeExtentReports(shardDirs, new File(mergedDir, "ExtentReport.html"));
+        int resultsCount = mergeTestNGResults(shardDirs, new File(mergedDir, "testng-results.xml"));
+        System.out.println("Merged " + extentCount + " Extent reports and " + resultsCount
+                + " TestNG results from " + shardDirs.length + " shards into " + mergedDir);
+    }
+
+    private static int mergeExtentReports(File[] shardDirs, File target) throws Exception {
+        ExtentSparkReporter sparkReporter = new ExtentSparkReporter(target);
+        sparkReporter.config().setDocumentTitle("Mastodon Social Test Automation Report");
+        sparkReporter.config().setReportName("Functional Test Report (" + shardDirs.length + " shards)");
+        sparkReporter.config().setTheme(Theme.STANDARD);
+
+        ExtentReports reports = new ExtentReports();
+        reports.attachReporter(sparkReporter);
+        int merged = 0;
+        for (File shardDir : shardDirs) {
+            File archive = new File(shardDir, "extent.json");
+            if (archive.isFile()) {
+                reports.createDomainFromJsonArchive(archive);
+                merged++;
+            }
+        }
+        reports.flush();
+        return merged;
+    }
+
+    private static int mergeTestNGResults(File[] shardDirs, File target) throws Exception {
+        DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        Document merged = null;
+        Map<String, Element> suites = new HashMap<>();
+        int count = 0;
+
+        for (File shardDir : shardDirs) {
+            File results = new File(shardDir, "testng-results.xml");
+            if (!results.isFile()) {
+                continue;
+            }
+            Document document = builder.parse(results);
+            count++;
+            if (merged == null) {
+                merged = document;
+                for (Element suite : children(merged.getDocumentElement(), "suite")) {
+                    suites.put(suite.getAttribute("name"), suite);
+                }
+                continue;
+            }
+
+            Element root = merged.getDocumentElement();
+            for (String counter : COUNTERS) {
+                root.setAttribute(counter, String.valueOf(number(root, counter)
+                        + number(document.getDocumentElement(), counter)));
+            }
+            for (Element suite : children(document.getDocumentElement(), "suite")) {
+                Element existing = suites.get(suite.getAttribute("name"));
+                if (existing == null) {
+                    Element imported = (Element) merged.importNode(suite, true);
+                    root.appendChild(imported);
+                    suites.put(suite.getAttribute("name"), imported);
+                } else {
+                    mergeSuite(merged, existing, suite);
+                }
+            }
+        }
+
+        if (merged == null) {
+            return 0;
+        }
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.transform(new DOMSource(merged), new StreamResult(target));
+        return count;
+    }
+
+    /**
+     * Appends the shard's &lt;test&gt; results to the suite and merges its group membership
+     */
+    private static void mergeSuite(Document merged, Element existing, Element suite) {
+        existing.setAttribute("duration-ms", String.valueOf(Math.max(number(existing, "duration-ms"),
+                number(suite, "duration-ms"))));
+        for (Element test : children(suite, "test")) {
+            existing.appendChild(merged.importNode(test, true));
+        }
+
+        List<Element> shardGroups = children(suite, "groups");
+        if (shardGroups.isEmpty()) {
+            return;
+        }
+        List<Element> existingGroups = children(existing, "groups");
+        if (existingGroups.isEmpty()) {
+            existing.appendChild(merged.importNode(shardGroups.get(0), true));
+            return;
+        }
+
+        Map<String, Element> groupsByName = new HashMap<>();
+        for (Element group : children(existingGroups.get(0), "group")) {
+            groupsByName.put(group.getAttribute("name"), group);
+        }
+        for (Element group : children(shardGroups.get(0), "group")) {
+            Element target = groupsByName.get(group.getAttribute("name"));
+            if (target == null) {
+                existingGroups.get(0).appendChild(merged.importNode(group, true));
+            } else {
+                for (Element method : children(group, "method")) {
+                    target.appendChild(merged.importNode(method, true));
+                }
+            }
+        }
+    }
+
+    private static long number(Element element, String attribute) {
+        String value = element.getAttribute(attribute);
+        return value.isEmpty() ? 0 : Long.parseLong(value);
+    }
+
+    private static List<Element> children(Element parent, String name) {
+        List<Element> elements = new ArrayList<>();
+        NodeList nodes = parent.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node node = nodes.item(i);
+            if (node.getNodeType() == Node.ELEMENT_NODE && node.getNodeName().equals(name)) {
+                elements.add((Element) node);
+            }
+        }
+        return elements;
+    }
+}
@@ -0,0 +1,128 @@
+package com.mastodon.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of parsed test data files
+ * Entries are keyed by file path, modification time, length and the part of
+ * the file that was parsed (a sheet, or a CSV delimiter), and hold immutable
+ * values that any thread may read. The first caller of a key parses the file
+ * while concurrent callers of the same key wait for that result; once loaded,
+ * a lookup is a single ConcurrentHashMap read without locking. A file that
+ * changes on disk gets a new key, and the entries of its older versions are
+ * dropped
+ */
+public final class TestDataCache {
+
+    private static final Map<Key, CompletableFuture<Object>> ENTRIES = new ConcurrentHashMap<>();
+
+    private TestDataCache() {
+    }
+
+    /**
+     * Parses part of a file
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load(File file) throws IOException;
+    }
+
+    /**
+     * Gets the parsed value for the current version of a file, loading it once
+     * Failed loads are not cached, so the next call tries again
+     *
+     * @param filePath Path to the file
+     * @param part     What is parsed, e.g. "xlsx:" + sheet name; values of
+     *                 different types must use different parts
+     * @param loader   Parses the file into an immutable value
+     * @return Parsed value, shared by all callers
+     * @throws IOException if the loader fails
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T get(String filePath, String part, Loader<T> loader) throws IOException {
+        File file = new File(filePath).getAbsoluteFile();
+        Key key = new Key(file.getPath(), part, file.lastModified(), file.length());
+
+        CompletableFuture<Object> entry = ENTRIES.get(key);
+        if (entry == null) {
+            CompletableFuture<Object> created = new CompletableFuture<>();
+            entry = ENTRIES.putIfAbsent(key, created);
+            if (entry == null) {
+                load(key, created, file, loader);
+                entry = created;
+            }
+        }
+
+        try {
+            return (T) entry.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new IOException(cause.getMessage(), cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Drops all entries, e.g. after test data files were regenerated in place
+     */
+    public static void clear() {
+        ENTRIES.clear();
+    }
+
+    private static <T> void load(Key key, CompletableFuture<Object> entry, File file, Loader<T> loader) {
+        try {
+            entry.complete(Objects.requireNonNull(loader.load(file)));
+            ENTRIES.keySet().removeIf(other -> other.isOtherVersionOf(key));
+        } catch (IOException | RuntimeException | Error e) {
+            ENTRIES.remove(key, entry);
+            entry.completeExceptionally(e);
+        }
+    }
+
+    private static final class Key {
+        private final String path;
+        private final String part;
+        private final long lastModified;
+        private final long length;
+
+        Key(String path, String part, long lastModified, long length) {
+            this.path = path;
+            this.part = part;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        boolean isOtherVersionOf(Key other) {
+            return path.equals(other.path) && part.equals(other.part) && !equals(other);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return lastModified == key.lastModified && length == key.length
+                    && path.equals(key.path) && part.equals(key.part);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, part, lastModified, length);
+        }
+    }
+}
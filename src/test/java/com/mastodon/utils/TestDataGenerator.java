@@ -0,0 +1,347 @@
+package com.mastodon.utils;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates large synthetic login, profile and post data sets for
+ * data-driven and load runs
+ * Rows are written as they are generated, to CSV through CsvStreamWriter and
+ * to XLSX through a streaming SXSSFWorkbook that keeps only a small window of
+ * rows in memory, so memory use is constant in the number of rows. Each data
+ * set draws from its own SplittableRandom derived from the seed, so the same
+ * seed gives the same rows in both formats however the data sets are spread
+ * over threads. Login and profile rows use the columns DataDrivenTests reads,
+ * and their expected results agree with its validation rules
+ */
+public class TestDataGenerator {
+
+    /**
+     * Max data rows of a sheet, below the XLSX limit of 1,048,576 rows including the header
+     */
+    public static final int MAX_XLSX_ROWS = 1_048_575;
+
+    private static final int ROW_WINDOW = 200;
+    private static final String[] FIRST_NAMES = { "John", "Jane", "Alex", "Sarah", "Mike", "Emily", "David",
+            "Lisa", "Tom", "Anna", "Omar", "Yuki", "Priya", "Lucas", "Chloe", "Mateo" };
+    private static final String[] LAST_NAMES = { "Doe", "Smith", "Johnson", "Wilson", "Brown", "Davis",
+            "Miller", "Garcia", "Anderson", "Taylor", "Khan", "Tanaka", "Patel", "Silva", "Martin", "Rossi" };
+    private static final String[] LOCATIONS = { "New York", "Los Angeles", "Chicago", "Berlin", "Tokyo",
+            "Paris, France", "Sao Paulo", "Mumbai", "Toronto", "Sydney" };
+    private static final String[] DOMAINS = { "example.com", "mastodon.social", "example.org" };
+    private static final String[] WORDS = { "mastodon", "fediverse", "open", "source", "today", "coffee",
+            "release", "music", "photo", "weekend", "thread", "community", "server", "update", "welcome",
+            "art", "science", "news", "question", "thanks" };
+    private static final String[] VISIBILITIES = { "public", "unlisted", "private", "direct" };
+    private static final String[] LANGUAGES = { "en", "de", "fr", "es", "ja" };
+    private static final String[] PRIORITIES = { "High", "Medium", "Low" };
+    private static final String[] BROWSERS = { "Chrome", "Firefox", "Edge" };
+
+    /**
+     * Generated data sets, with the sheet name and columns their readers expect
+     */
+    public enum DataSet {
+        LOGIN("LoginData", "username", "password", "expectedResult", "testDescription", "priority", "browser"),
+        PROFILE("UserProfiles", "firstName", "lastName", "email", "bio", "location", "website", "birthDate",
+                "testScenario"),
+        POSTS("PostContent", "content", "visibility", "contentWarning", "language", "testScenario");
+
+        private final String sheetName;
+        private final String[] headers;
+
+        DataSet(String sheetName, String... headers) {
+            this.sheetName = sheetName;
+            this.headers = headers;
+        }
+
+        public String getSheetName() {
+            return sheetName;
+        }
+
+        public String[] getHeaders() {
+            return headers.clone();
+        }
+    }
+
+    private final long seed;
+
+    /**
+     * Creates a generator
+     *
+     * @param seed Seed; the same seed always generates the same rows
+     */
+    public TestDataGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Writes a data set as CSV
+     *
+     * @param dataSet Data set
+     * @param rows    Number of data rows
+     * @param file    Output file
+     */
+    public void writeCsv(DataSet dataSet, long rows, Path file) throws IOException {
+        SplittableRandom random = random(dataSet);
+        // Platform charset, as CSVDataReader reads with it
+        try (CsvStreamWriter writer = new CsvStreamWriter(new OutputStreamWriter(Files.newOutputStream(file)))) {
+            writer.writeRecord(dataSet.headers);
+            for (long i = 0; i < rows; i++) {
+                writer.writeRecord(row(dataSet, random, i));
+            }
+        }
+    }
+
+    /**
+     * Writes a data set as a single-sheet XLSX file
+     *
+     * @param dataSet Data set
+     * @param rows    Number of data rows, at most MAX_XLSX_ROWS
+     * @param file    Output file
+     */
+    public void writeXlsx(DataSet dataSet, int rows, Path file) throws IOException {
+        if (rows > MAX_XLSX_ROWS) {
+            throw new IllegalArgumentException("An XLSX sheet holds at most " + MAX_XLSX_ROWS + " data rows: " + rows);
+        }
+
+        SplittableRandom random = random(dataSet);
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        try {
+            // Flushed rows are kept in gzipped temporary files until the workbook is written
+            workbook.setCompressTempFiles(true);
+            Sheet sheet = workbook.createSheet(dataSet.sheetName);
+            writeRow(sheet, 0, dataSet.headers);
+            for (int i = 0; i < rows; i++) {
+                writeRow(sheet, i + 1, row(dataSet, random, i));
+            }
+            try (OutputStream out = new FileOutputStream(file.toFile())) {
+                workbook.write(out);
+            }
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * Writes every data set in both formats, one thread per file
+     *
+     * @param directory Output directory, created if missing
+     * @param rows      Number of data rows per data set
+     * @return Written files
+     */
+    public List<Path> generateAll(Path directory, int rows) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        List<Future<?>> tasks = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(DataSet.values().length * 2, Runtime.getRuntime().availableProcessors()));
+        try {
+            for (DataSet dataSet : DataSet.values()) {
+                String name = "Generated" + dataSet.sheetName + "-" + rows;
+                Path csv = directory.resolve(name + ".csv");
+                Path xlsx = directory.resolve(name + ".xlsx");
+                files.add(csv);
+                files.add(xlsx);
+                tasks.add(executor.submit(() -> {
+                    writeCsv(dataSet, rows, csv);
+                    return null;
+                }));
+                tasks.add(executor.submit(() -> {
+                    writeXlsx(dataSet, rows, xlsx);
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating test data", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Test data generation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return files;
+    }
+
+    private SplittableRandom random(DataSet dataSet) {
+        return new SplittableRandom(seed ^ (0x9E3779B97F4A7C15L * (dataSet.ordinal() + 1)));
+    }
+
+    private static void writeRow(Sheet sheet, int rowIndex, String[] values) {
+        Row row = sheet.createRow(rowIndex);
+        for (int i = 0; i < values.length; i++) {
+            row.createCell(i).setCellValue(values[i]);
+        }
+    }
+
+    private static String[] row(DataSet dataSet, SplittableRandom random, long index) {
+        switch (dataSet) {
+            case LOGIN:
+                return loginRow(random, index);
+            case PROFILE:
+                return profileRow(random, index);
+            default:
+                return postRow(random, index);
+        }
+    }
+
+    /**
+     * Login row whose expected result matches the validation rules in DataDrivenTests
+     */
+    private static String[] loginRow(SplittableRandom random, long index) {
+        String username = "user" + index + "@" + pick(random, DOMAINS);
+        String password = "Pass" + (100000 + random.nextInt(900000));
+        String expectedResult = "failure";
+        String description;
+        int scenario = random.nextInt(10);
+        switch (scenario) {
+            case 0:
+                password = "Wrong" + random.nextInt(1000);
+                description = "Invalid password";
+                break;
+            case 1:
+                username = "";
+                description = "Empty username";
+                break;
+            case 2:
+                password = "";
+                description = "Empty password";
+                break;
+            case 3:
+                username = "user" + index;
+                description = "Invalid email format";
+                break;
+            case 4:
+                password = "P" + random.nextInt(10000);
+                description = "Password too short";
+                break;
+            case 5:
+                username = "blocked_user" + index + "@example.com";
+                expectedResult = "blocked";
+                description = "Blocked user account";
+                break;
+            default:
+                expectedResult = "success";
+                description = "Valid login credentials";
+                break;
+        }
+        return new String[] { username, password, expectedResult, description + " " + index,
+                pick(random, PRIORITIES), pick(random, BROWSERS) };
+    }
+
+    /**
+     * Profile row with a valid email and an empty or http website, as DataDrivenTests validates
+     */
+    private static String[] profileRow(SplittableRandom random, long index) {
+        String firstName = pick(random, FIRST_NAMES);
+        String lastName = pick(random, LAST_NAMES);
+        String email = firstName.toLowerCase(Locale.ROOT) + "." + lastName.toLowerCase(Locale.ROOT) + index
+                + "@" + pick(random, DOMAINS);
+        String bio = sentence(random, 3 + random.nextInt(12));
+        String location = pick(random, LOCATIONS);
+        String website = "https://" + firstName.toLowerCase(Locale.ROOT) + index + ".dev";
+        String birthDate = LocalDate.ofEpochDay(-7300 + random.nextInt(12775)).toString(); // 1950 to 1984
+        String scenario;
+        switch (random.nextInt(5)) {
+            case 0:
+                location = "";
+                scenario = "Missing location";
+                break;
+            case 1:
+                website = "";
+                scenario = "Missing website";
+                break;
+            case 2:
+                bio = "";
+                location = "";
+                website = "";
+                birthDate = "";
+                scenario = "Minimal profile";
+                break;
+            default:
+                scenario = "Complete profile";
+                break;
+        }
+        return new String[] { firstName, lastName, email, bio, location, website, birthDate,
+                scenario + " " + index };
+    }
+
+    /**
+     * Post of up to 500 characters; some contain commas, quotes, line breaks, hashtags and mentions
+     */
+    private static String[] postRow(SplittableRandom random, long index) {
+        StringBuilder content = new StringBuilder(sentence(random, 1 + random.nextInt(60)));
+        int extras = random.nextInt(8);
+        if (extras == 0) {
+            content.append(",\n\"").append(sentence(random, 4)).append("\"");
+        } else if (extras == 1) {
+            content.append(" #").append(pick(random, WORDS)).append(" @").append(pick(random, FIRST_NAMES)
+                    .toLowerCase(Locale.ROOT)).append("@").append(pick(random, DOMAINS));
+        }
+        if (content.length() > 500) {
+            content.setLength(500);
+        }
+        String contentWarning = random.nextInt(5) == 0 ? sentence(random, 2) : "";
+        String scenario = contentWarning.isEmpty() ? "Post" : "Post with content warning";
+        return new String[] { content.toString(), pick(random, VISIBILITIES), contentWarning,
+                pick(random, LANGUAGES), scenario + " " + index };
+    }
+
+    private static String sentence(SplittableRandom random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(pick(random, WORDS));
+        }
+        return sentence.toString();
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * Generates all data sets
+     *
+     * @param args Rows per data set (default 100000), seed (default 42) and
+     *             output directory (default target/generated-testdata)
+     */
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+        Path directory = Paths.get(args.length > 2 ? args[2] : "target/generated-testdata");
+
+        long start = System.currentTimeMillis();
+        List<Path> files = new TestDataGenerator(seed).generateAll(directory, rows);
+        for (Path file : files) {
+            System.out.println("Generated " + file + " (" + Files.size(file) / 1024 + " KB)");
+        }
+        System.out.println("Test data generation completed in " + (System.currentTimeMillis() - start) + " ms");
+    }
+}
@@ -0,0 +1,121 @@
+package com.mastodon.utils;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Per-method durations from previous runs, kept in a local properties file
+ * Keys are fully qualified method names (class.method), values are a moving
+ * average in milliseconds so one slow run does not dominate the estimate
+ * The file is replaced atomically, so readers that do not take the lock see
+ * either the previous or the new history, never a partly written one
+ */
+public class TestDurationHistory {
+
+    private static final String HISTORY_FILE = ConfigUtils.getProperty("scheduler.historyFile",
+            "test-output/test-durations.properties");
+
+    // Weight of the newest sample in the moving average
+    private static final double NEW_SAMPLE_WEIGHT = 0.5;
+
+    /**
+     * Loads the recorded durations
+     *
+     * @return Method name to estimated duration in milliseconds, empty if there is no history yet
+     */
+    public static synchronized Map<String, Long> load() {
+        Map<String, Long> durations = new HashMap<>();
+        File historyFile = new File(HISTORY_FILE);
+        if (!historyFile.exists()) {
+            return durations;
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = new FileReader(historyFile)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            System.err.println("Failed to read test duration history: " + e.getMessage());
+            return durations;
+        }
+
+        for (String name : properties.stringPropertyNames()) {
+            try {
+                durations.put(name, Long.parseLong(properties.getProperty(name).trim()));
+            } catch (NumberFormatException e) {
+                // Ignore hand-edited or corrupt entries
+            }
+        }
+        return durations;
+    }
+
+    /**
+     * Merges the durations of a finished run into the history file
+     * Shards (-Dshard=i/N) do not record: the other shards of the run may
+     * still be splitting their suite by the same history
+     *
+     * @param samples Method name to measured duration in milliseconds
+     */
+    public static synchronized void record(Map<String, Long> samples) {
+        if (samples.isEmpty() || Shard.isActive()) {
+            return;
+        }
+
+        File historyFile = new File(HISTORY_FILE);
+        if (historyFile.getParentFile() != null) {
+            historyFile.getParentFile().mkdirs();
+        }
+        // Worker JVMs of a work-stealing run update the history concurrently
+        try (RandomAccessFile lockFile = new RandomAccessFile(HISTORY_FILE + ".lock", "rw");
+             FileChannel channel = lockFile.getChannel()) {
+            FileLock lock = channel.lock();
+            try {
+                write(historyFile, samples);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to lock test duration history: " + e.getMessage());
+        }
+    }
+
+    private static void write(File historyFile, Map<String, Long> samples) {
+        Map<String, Long> durations = load();
+        for (Map.Entry<String, Long> sample : samples.entrySet()) {
+            durations.merge(sample.getKey(), sample.getValue(),
+                    (previous, latest) -> Math.round(previous * (1 - NEW_SAMPLE_WEIGHT) + latest * NEW_SAMPLE_WEIGHT));
+        }
+
+        Properties properties = new Properties();
+        for (Map.Entry<String, Long> entry : durations.entrySet()) {
+            properties.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+
+        Path target = historyFile.toPath().toAbsolutePath();
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(target.getParent(), historyFile.getName(), ".tmp");
+            try (Writer writer = new FileWriter(temp.toFile())) {
+                properties.store(writer, "Test method durations in ms, used by LongestFirstInterceptor");
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Failed to write test duration history: " + e.getMessage());
+            if (temp != null) {
+                temp.toFile().delete();
+            }
+        }
+    }
+}
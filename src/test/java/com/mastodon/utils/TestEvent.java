@@ -0,0 +1,240 @@
+package com.mastodon.utils;
+
+import com.aventstack.extentreports.ExtentTest;
+import org.testng.ISuite;
+import org.testng.ITestContext;
+import org.testng.ITestResult;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of a TestNG listener callback
+ * Listeners capture only what they need on the test thread and publish the
+ * event to a TestEventBus; consumers do the formatting and reporting later
+ */
+public final class TestEvent {
+
+    /**
+     * Listener callback that produced the event
+     */
+    public enum Type {
+        SUITE_START, SUITE_FINISH, CONTEXT_START, CONTEXT_FINISH, TEST_START, TEST_SUCCESS, TEST_FAILURE,
+        TEST_SKIPPED, TEST_DEFERRED, TEST_FAILED_WITHIN_PERCENTAGE, CONFIGURATION_FAILURE
+    }
+
+    private final Type type;
+    private final long timestampMillis;
+    private final String threadName;
+    private final String scopeName;
+    private final String className;
+    private final String methodName;
+    private final String description;
+    private final List<String> groups;
+    private final long startMillis;
+    private final long endMillis;
+    private final Throwable throwable;
+    private final int[] counts;
+    private final ExtentTest reportNode;
+    private final String screenshotPath;
+    private final String clipPath;
+    private final String attachmentWarning;
+    private final String logPath;
+
+    private TestEvent(Type type, String scopeName, String className, String methodName, String description,
+            List<String> groups, long startMillis, long endMillis, Throwable throwable, int[] counts,
+            ExtentTest reportNode, String screenshotPath, String clipPath, String attachmentWarning, String logPath) {
+        this.type = type;
+        this.timestampMillis = System.currentTimeMillis();
+        this.threadName = Thread.currentThread().getName();
+        this.scopeName = scopeName;
+        this.className = className;
+        this.methodName = methodName;
+        this.description = description;
+        this.groups = groups;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.throwable = throwable;
+        this.counts = counts;
+        this.reportNode = reportNode;
+        this.screenshotPath = screenshotPath;
+        this.clipPath = clipPath;
+        this.attachmentWarning = attachmentWarning;
+        this.logPath = logPath;
+    }
+
+    /**
+     * Creates a suite level event
+     *
+     * @param type  SUITE_START or SUITE_FINISH
+     * @param suite TestNG suite
+     * @return Event
+     */
+    public static TestEvent forSuite(Type type, ISuite suite) {
+        return new TestEvent(type, suite.getName(), null, null, null, Collections.emptyList(), 0, 0, null,
+                new int[0], null, null, null, null, null);
+    }
+
+    /**
+     * Creates a test context level event including its result counts
+     *
+     * @param type    CONTEXT_START or CONTEXT_FINISH
+     * @param context TestNG test context
+     * @return Event
+     */
+    public static TestEvent forContext(Type type, ITestContext context) {
+        int[] counts = { context.getAllTestMethods().length, context.getPassedTests().size(),
+                context.getFailedTests().size(), context.getSkippedTests().size() };
+        long start = context.getStartDate() != null ? context.getStartDate().getTime() : 0;
+        long end = context.getEndDate() != null ? context.getEndDate().getTime() : 0;
+        return new TestEvent(type, context.getName(), null, null, null, Collections.emptyList(), start, end, null,
+                counts, null, null, null, null, null);
+    }
+
+    /**
+     * Creates a test method level event
+     *
+     * @param type   Test event type
+     * @param result TestNG test result
+     * @return Event
+     */
+    public static TestEvent forResult(Type type, ITestResult result) {
+        String[] groups = result.getMethod().getGroups();
+        return new TestEvent(type, result.getTestContext() != null ? result.getTestContext().getName() : null,
+                result.getTestClass().getName(), result.getMethod().getMethodName(),
+                result.getMethod().getDescription(),
+                Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(groups, groups.length))),
+                result.getStartMillis(), result.getEndMillis(), result.getThrowable(), new int[0], null, null, null,
+                null, null);
+    }
+
+    /**
+     * Returns a copy of this event bound to a report node
+     *
+     * @param node ExtentTest the event belongs to
+     * @return Event copy
+     */
+    public TestEvent withReportNode(ExtentTest node) {
+        return new TestEvent(type, scopeName, className, methodName, description, groups, startMillis, endMillis,
+                throwable, counts, node, screenshotPath, clipPath, attachmentWarning, logPath);
+    }
+
+    /**
+     * Returns a copy of this event carrying failure attachments captured on
+     * the test thread
+     *
+     * @param screenshot Screenshot path, may be null
+     * @param clip       Screencast clip path, may be null
+     * @param warning    Reason the screenshot is missing, may be null
+     * @return Event copy
+     */
+    public TestEvent withAttachments(String screenshot, String clip, String warning) {
+        return new TestEvent(type, scopeName, className, methodName, description, groups, startMillis, endMillis,
+                throwable, counts, reportNode, screenshot, clip, warning, logPath);
+    }
+
+    /**
+     * Returns a copy of this event carrying the test's captured log file
+     *
+     * @param path Log file path, may be null
+     * @return Event copy
+     */
+    public TestEvent withLogPath(String path) {
+        return new TestEvent(type, scopeName, className, methodName, description, groups, startMillis, endMillis,
+                throwable, counts, reportNode, screenshotPath, clipPath, attachmentWarning, path);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    public String getScopeName() {
+        return scopeName;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * Gets the fully qualified test name (class.method)
+     *
+     * @return Test name, or the scope name for suite and context events
+     */
+    public String getTestName() {
+        return className != null ? className + "." + methodName : scopeName;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public List<String> getGroups() {
+        return groups;
+    }
+
+    public long getDurationMillis() {
+        return endMillis - startMillis;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    public Throwable getThrowable() {
+        return throwable;
+    }
+
+    public int getTotalCount() {
+        return counts.length > 0 ? counts[0] : 0;
+    }
+
+    public int getPassedCount() {
+        return counts.length > 1 ? counts[1] : 0;
+    }
+
+    public int getFailedCount() {
+        return counts.length > 2 ? counts[2] : 0;
+    }
+
+    public int getSkippedCount() {
+        return counts.length > 3 ? counts[3] : 0;
+    }
+
+    public ExtentTest getReportNode() {
+        return reportNode;
+    }
+
+    public String getScreenshotPath() {
+        return screenshotPath;
+    }
+
+    public String getClipPath() {
+        return clipPath;
+    }
+
+    public String getAttachmentWarning() {
+        return attachmentWarning;
+    }
+
+    public String getLogPath() {
+        return logPath;
+    }
+}
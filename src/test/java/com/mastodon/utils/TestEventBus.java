@@ -0,0 +1,197 @@
+package com.mastodon.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free multi-producer ring buffer that broadcasts TestEvents to a fixed
+ * set of consumers
+ * Test threads only claim a slot and store the event; every consumer runs on
+ * its own daemon thread with its own cursor. Producers wait for the slowest
+ * consumer when the ring is full, so no event is ever dropped
+ * close() drains the bus and stops the consumer threads; events published
+ * after that are dropped with a warning
+ */
+public class TestEventBus {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final TestEvent[] ring;
+    private final AtomicLongArray publishedSequences;
+    private final int mask;
+    private final AtomicLong claimSequence = new AtomicLong(-1);
+    private final List<Worker> workers = new ArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * Creates a bus with the default capacity
+     *
+     * @param name      Name used for the consumer threads
+     * @param consumers Consumers that receive every event
+     */
+    public TestEventBus(String name, TestEventConsumer... consumers) {
+        this(name, DEFAULT_CAPACITY, consumers);
+    }
+
+    /**
+     * Creates a bus
+     *
+     * @param name      Name used for the consumer threads
+     * @param capacity  Ring size, rounded up to a power of two
+     * @param consumers Consumers that receive every event
+     */
+    public TestEventBus(String name, int capacity, TestEventConsumer... consumers) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new TestEvent[size];
+        this.publishedSequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            publishedSequences.set(i, -1);
+        }
+
+        for (TestEventConsumer consumer : consumers) {
+            Worker worker = new Worker(consumer);
+            Thread thread = new Thread(worker, name + "-" + consumer.getClass().getSimpleName());
+            thread.setDaemon(true);
+            worker.thread = thread;
+            workers.add(worker);
+            thread.start();
+        }
+    }
+
+    /**
+     * Publishes an event; returns as soon as the event is stored in the ring
+     *
+     * @param event Event to publish
+     */
+    public void publish(TestEvent event) {
+        if (closed) {
+            System.err.println("Event bus closed, dropping " + event.getType() + " event of " + event.getScopeName());
+            return;
+        }
+        long sequence = claimSequence.incrementAndGet();
+
+        // Back-pressure: never overwrite a slot a consumer has not read yet
+        int idleCount = 0;
+        while (sequence - minimumConsumerSequence() > ring.length) {
+            idleCount = idle(idleCount);
+        }
+
+        int index = (int) sequence & mask;
+        ring[index] = event;
+        publishedSequences.set(index, sequence);
+    }
+
+    /**
+     * Waits until every consumer has processed every event published so far
+     *
+     * @param timeoutSeconds Maximum time to wait
+     * @return true if the bus was fully drained
+     */
+    public boolean drain(long timeoutSeconds) {
+        long target = claimSequence.get();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        int idleCount = 0;
+
+        while (minimumConsumerSequence() < target) {
+            if (System.nanoTime() > deadline) {
+                System.err.println("Event bus not drained: " + (target - minimumConsumerSequence())
+                        + " events still pending");
+                return false;
+            }
+            idleCount = idle(idleCount);
+        }
+        return true;
+    }
+
+    /**
+     * Drains the bus, then stops and joins the consumer threads
+     *
+     * @param timeoutSeconds Maximum time to wait for the pending events
+     * @return true if every event was processed before the consumers stopped
+     */
+    public boolean close(long timeoutSeconds) {
+        boolean drained = drain(timeoutSeconds);
+        closed = true;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+        for (Worker worker : workers) {
+            try {
+                worker.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return drained;
+    }
+
+    private long minimumConsumerSequence() {
+        long minimum = claimSequence.get();
+        for (Worker worker : workers) {
+            minimum = Math.min(minimum, worker.cursor.get());
+        }
+        return minimum;
+    }
+
+    /**
+     * Spins briefly, then yields, then parks with growing pauses
+     *
+     * @param idleCount Number of consecutive idle iterations so far
+     * @return Updated idle count
+     */
+    private static int idle(int idleCount) {
+        if (idleCount < 100) {
+            Thread.onSpinWait();
+        } else if (idleCount < 200) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(Math.min(1_000_000L, 10_000L * (idleCount - 199)));
+        }
+        return idleCount + 1;
+    }
+
+    /**
+     * Consumer loop reading the ring with its own cursor
+     */
+    private class Worker implements Runnable {
+        private final TestEventConsumer consumer;
+        private final AtomicLong cursor = new AtomicLong(-1);
+        private Thread thread;
+
+        private Worker(TestEventConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void run() {
+            int idleCount = 0;
+            while (true) {
+                long next = cursor.get() + 1;
+                int index = (int) next & mask;
+
+                if (publishedSequences.get(index) != next) {
+                    if (closed) {
+                        return;
+                    }
+                    idleCount = idle(idleCount);
+                    continue;
+                }
+
+                idleCount = 0;
+                try {
+                    consumer.onEvent(ring[index]);
+                } catch (RuntimeException e) {
+                    System.err.println("Event consumer " + consumer.getClass().getSimpleName() + " failed: "
+                            + e.getMessage());
+                }
+                cursor.set(next);
+            }
+        }
+    }
+}
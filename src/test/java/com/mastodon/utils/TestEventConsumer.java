@@ -0,0 +1,14 @@
+package com.mastodon.utils;
+
+/**
+ * Receives TestEvents from a TestEventBus on the consumer's own thread
+ */
+public interface TestEventConsumer {
+
+    /**
+     * Handles a single event; events arrive in publication order
+     *
+     * @param event Published event
+     */
+    void onEvent(TestEvent event);
+}
@@ -1,6 +1,10 @@
 package com.mastodon.utils;
 
 import org.testng.IConfigurationListener;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
 import org.testng.ITestContext;
 import org.testng.ITestListener;
 import org.testng.ITestResult;
@@ -8,143 +12,201 @@ import org.testng.ITestResult;
 import com.mastodon.tests.BaseTest;
 import com.aventstack.extentreports.ExtentReports;
 import com.aventstack.extentreports.ExtentTest;
-import com.aventstack.extentreports.Status;
 
 /**
  * Custom TestNG Listener for ExtentReports integration
  * Provides comprehensive test reporting with screenshots on failures
+ * The report is created once per suite and shared by all test contexts
+ * Only work that needs the test thread (creating the report node, capturing
+ * screenshots) happens inline; report logging is handed to an event bus
+ * TestLog output is captured per test, from its first @BeforeMethod to its
+ * last @AfterMethod, and only written to a file, and linked from the report,
+ * when the test fails or is deferred to the rerun pass
+ * A rerun reports into the node of its deferred attempt, so the report shows
+ * one entry per test with the evidence of both attempts
  */
-public class TestListener implements ITestListener, IConfigurationListener {
+public class TestListener implements ITestListener, IConfigurationListener, ISuiteListener, IInvokedMethodListener {
     
-    private static ExtentReports extent;
+    private static final String REPORT_NODE_ATTRIBUTE = "extent.reportNode";
+    private static final String DEFERRED_NODE_ATTRIBUTE = "extent.deferredNode";
+
     private static ThreadLocal<ExtentTest> test = new ThreadLocal<>();
+    // @AfterMethod invocations still to come before the finished test's capture ends
+    private static final ThreadLocal<Integer> teardownsLeft = new ThreadLocal<>();
+    private final TestEventBus eventBus = new TestEventBus("extent-events", new ExtentEventConsumer());
+    
+    @Override
+    public void onStart(ISuite suite) {
+        ExtentManager.createInstance();
+        System.out.println("ExtentReports initialized for test suite: " + suite.getName());
+    }
+    
+    @Override
+    public void onFinish(ISuite suite) {
+        // Reruns report into this listener, so they run before its bus closes
+        RerunOrchestrator.runPendingReruns(suite);
+        eventBus.close(60);
+        ScreencastRecorder.awaitPendingEncodings(30);
+        TestLog.finishAll();
+        NavigationService.printSummary();
+        ExtentManager.shutdown();
+        System.out.println("ExtentReports flushed. Report generated at: test-output/ExtentReport.html");
+    }
+    
+    @Override
+    public void beforeInvocation(IInvokedMethod method, ITestResult testResult) {
+        // A new test starts: end the previous one's capture if its last @AfterMethod did not run
+        if ((method.isTestMethod() || method.getTestMethod().isBeforeMethodConfiguration()) && TestLog.isDecided()) {
+            teardownsLeft.remove();
+            TestLog.finish();
+        }
+        // Configuration methods share the capture of the test they prepare or tear down
+        TestLog.beginCapture();
+    }
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult testResult) {
+        if (!method.getTestMethod().isAfterMethodConfiguration() || teardownsLeft.get() == null) {
+            return;
+        }
+        int left = teardownsLeft.get() - 1;
+        if (left > 0) {
+            teardownsLeft.set(left);
+        } else {
+            teardownsLeft.remove();
+            TestLog.finish();
+        }
+    }
     
     @Override
     public void onStart(ITestContext context) {
-        extent = ExtentManager.createInstance();
-        System.out.println("ExtentReports initialized for test suite: " + context.getName());
+        System.out.println("Test context started: " + context.getName());
     }
     
     @Override
     public void onTestStart(ITestResult result) {
         String testName = result.getMethod().getMethodName();
         String className = result.getTestClass().getName();
-        String description = result.getMethod().getDescription();
         
-        ExtentTest extentTest = extent.createTest(className + "." + testName);
-        
-        if (description != null && !description.isEmpty()) {
-            extentTest.info("Test Description: " + description);
-        }
-        
-        // Add test groups if any
-        String[] groups = result.getMethod().getGroups();
-        if (groups.length > 0) {
-            extentTest.assignCategory(groups);
+        // Created inline so tests can log through getCurrentTest() right away; reruns get their
+        // attempt's attributes from RerunOrchestrator and continue in its node
+        ExtentTest extentTest = (ExtentTest) result.getAttribute(DEFERRED_NODE_ATTRIBUTE);
+        if (extentTest == null) {
+            // Tests skipped because a deferred test had failed are replaced by their rerun
+            Object skippedNode = result.getAttribute(REPORT_NODE_ATTRIBUTE);
+            if (skippedNode instanceof ExtentTest) {
+                ExtentManager.removeTest((ExtentTest) skippedNode);
+            }
+            extentTest = ExtentManager.createTest(className + "." + testName);
         }
-        
+        result.setAttribute(REPORT_NODE_ATTRIBUTE, extentTest);
         test.set(extentTest);
-        System.out.println("Started test: " + testName);
+        
+        publish(TestEvent.Type.TEST_START, result);
     }
     
     @Override
     public void onTestSuccess(ITestResult result) {
-        test.get().log(Status.PASS, "Test Passed Successfully");
-        System.out.println("Test passed: " + result.getMethod().getMethodName());
+        ScreencastRecorder.discard();
+        TestLog.discardOnEnd();
+        endCaptureAfterTeardown(result);
+        publish(TestEvent.Type.TEST_SUCCESS, result);
     }
     
     @Override
     public void onTestFailure(ITestResult result) {
         String testName = result.getMethod().getMethodName();
-        Throwable throwable = result.getThrowable();
-        
-        test.get().log(Status.FAIL, "Test Failed: " + throwable.getMessage());
-        test.get().log(Status.FAIL, "Stack Trace: " + getStackTraceAsString(throwable));
         
-        // Take screenshot on failure
+        // Screenshots and the screencast need the live driver, so they stay on the test thread
+        String screenshotPath = null;
+        String warning = null;
         try {
             if (BaseTest.getDriver() != null) {
-                String screenshotPath = ScreenshotUtil.takeScreenshot(BaseTest.getDriver(), testName);
-                if (screenshotPath != null) {
-                    test.get().addScreenCaptureFromPath(screenshotPath);
-                    test.get().log(Status.INFO, "Screenshot captured and attached to report");
-                } else {
-                    test.get().log(Status.WARNING, "Failed to capture screenshot: Screenshot path is null");
+                screenshotPath = ScreenshotUtil.takeScreenshot(BaseTest.getDriver(), testName);
+                if (screenshotPath == null) {
+                    warning = "Failed to capture screenshot: Screenshot path is null";
                 }
             } else {
-                test.get().log(Status.WARNING, "Failed to capture screenshot: WebDriver is null");
+                warning = "Failed to capture screenshot: WebDriver is null";
             }
         } catch (Exception e) {
-            test.get().log(Status.WARNING, "Failed to capture screenshot: " + e.getMessage());
+            warning = "Failed to capture screenshot: " + e.getMessage();
             System.err.println("Screenshot capture failed: " + e.getMessage());
         }
         
-        System.out.println("Test failed: " + testName + " - " + throwable.getMessage());
+        // Attach the last seconds of the screencast; the clip is encoded in the background
+        String clipPath = ScreencastRecorder.captureFailureClip(testName);
+        String logPath = TestLog.keep(testName);
+        endCaptureAfterTeardown(result);
+        
+        eventBus.publish(TestEvent.forResult(TestEvent.Type.TEST_FAILURE, result)
+                .withReportNode(test.get())
+                .withAttachments(screenshotPath, clipPath, warning)
+                .withLogPath(logPath));
     }
     
     @Override
     public void onTestSkipped(ITestResult result) {
-        String testName = result.getMethod().getMethodName();
-        Throwable throwable = result.getThrowable();
-        
-        test.get().log(Status.SKIP, "Test Skipped: " + (throwable != null ? throwable.getMessage() : "No reason provided"));
-        
-        if (throwable != null) {
-            test.get().log(Status.SKIP, "Stack Trace: " + getStackTraceAsString(throwable));
+        if (result.wasRetried()) {
+            // Deferred to the rerun pass: keep this attempt's evidence like a failure's
+            String testName = result.getMethod().getMethodName();
+            String clipPath = ScreencastRecorder.captureFailureClip(testName);
+            String logPath = TestLog.keep(testName);
+            endCaptureAfterTeardown(result);
+            result.setAttribute(DEFERRED_NODE_ATTRIBUTE, test.get());
+            eventBus.publish(TestEvent.forResult(TestEvent.Type.TEST_DEFERRED, result)
+                    .withReportNode(test.get())
+                    .withAttachments(null, clipPath, null)
+                    .withLogPath(logPath));
+            return;
         }
-        
-        System.out.println("Test skipped: " + testName);
+        ScreencastRecorder.discard();
+        TestLog.discardOnEnd();
+        endCaptureAfterTeardown(result);
+        publish(TestEvent.Type.TEST_SKIPPED, result);
     }
     
     @Override
     public void onTestFailedButWithinSuccessPercentage(ITestResult result) {
-        String testName = result.getMethod().getMethodName();
-        Throwable throwable = result.getThrowable();
-        
-        test.get().log(Status.WARNING, "Test Failed but within Success Percentage: " + throwable.getMessage());
-        test.get().log(Status.WARNING, "Stack Trace: " + getStackTraceAsString(throwable));
-        
-        System.out.println("Test failed but within success percentage: " + testName);
+        TestLog.discardOnEnd();
+        endCaptureAfterTeardown(result);
+        publish(TestEvent.Type.TEST_FAILED_WITHIN_PERCENTAGE, result);
     }
     
     @Override
     public void onConfigurationFailure(ITestResult result) {
         String methodName = result.getMethod().getMethodName();
-        Throwable throwable = result.getThrowable();
         
-        ExtentTest extentTest = extent.createTest(methodName + "_Configuration");
+        ExtentTest extentTest = ExtentManager.createTest(methodName + "_Configuration");
         test.set(extentTest);
         
-        test.get().log(Status.FAIL, "Configuration Failed: " + throwable.getMessage());
-        test.get().log(Status.FAIL, "Stack Trace: " + getStackTraceAsString(throwable));
-        
         // Take screenshot on configuration failure
+        String screenshotPath = null;
+        String warning = null;
         try {
             if (BaseTest.getDriver() != null) {
-                String screenshotPath = ScreenshotUtil.takeScreenshot(BaseTest.getDriver(), methodName + "_Config");
-                if (screenshotPath != null) {
-                    test.get().addScreenCaptureFromPath(screenshotPath);
-                    test.get().log(Status.INFO, "Screenshot captured for configuration failure");
-                } else {
-                    test.get().log(Status.WARNING, "Failed to capture screenshot: Screenshot path is null");
+                screenshotPath = ScreenshotUtil.takeScreenshot(BaseTest.getDriver(), methodName + "_Config");
+                if (screenshotPath == null) {
+                    warning = "Failed to capture screenshot: Screenshot path is null";
                 }
             } else {
-                test.get().log(Status.WARNING, "Failed to capture screenshot: WebDriver is null");
+                warning = "Failed to capture screenshot: WebDriver is null";
             }
         } catch (Exception e) {
-            test.get().log(Status.WARNING, "Failed to capture screenshot: " + e.getMessage());
+            warning = "Failed to capture screenshot: " + e.getMessage();
             System.err.println("Screenshot capture failed for configuration: " + e.getMessage());
         }
         
-        System.out.println("Configuration failed: " + methodName + " - " + throwable.getMessage());
+        eventBus.publish(TestEvent.forResult(TestEvent.Type.CONFIGURATION_FAILURE, result)
+                .withReportNode(extentTest)
+                .withAttachments(screenshotPath, null, warning)
+                .withLogPath(TestLog.keep(methodName + "_Config")));
     }
     
     @Override
     public void onFinish(ITestContext context) {
-        if (extent != null) {
-            extent.flush();
-            System.out.println("ExtentReports flushed. Report generated at: test-output/ExtentReport.html");
-        }
+        // Written by the background flusher; the final flush happens when the suite finishes
+        ExtentManager.markDirty();
         
         // Print test summary
         int totalTests = context.getAllTestMethods().length;
@@ -162,27 +224,32 @@ public class TestListener implements ITestListener, IConfigurationListener {
     }
     
     /**
-     * Converts throwable stack trace to string
-     * @param throwable The throwable to convert
-     * @return Stack trace as string
+     * TestNG reports the result before @AfterMethod runs, so the capture ends
+     * after the test's last @AfterMethod (see afterInvocation)
+     * @param result TestNG test result
      */
-    private String getStackTraceAsString(Throwable throwable) {
-        if (throwable == null) {
-            return "No stack trace available";
-        }
-        
-        StringBuilder sb = new StringBuilder();
-        sb.append(throwable.toString()).append("\n");
-        
-        for (StackTraceElement element : throwable.getStackTrace()) {
-            sb.append("\tat ").append(element.toString()).append("\n");
+    private void endCaptureAfterTeardown(ITestResult result) {
+        int teardowns = result.getMethod().getTestClass().getAfterTestMethods().length;
+        if (teardowns == 0 || !TestLog.isCapturing()) {
+            teardownsLeft.remove();
+            TestLog.finish();
+        } else {
+            teardownsLeft.set(teardowns);
         }
-        
-        return sb.toString();
+    }
+
+    /**
+     * Publishes a result event bound to the current thread's report node
+     * @param type Event type
+     * @param result TestNG test result
+     */
+    private void publish(TestEvent.Type type, ITestResult result) {
+        eventBus.publish(TestEvent.forResult(type, result).withReportNode(test.get()));
     }
     
     /**
      * Gets the current ExtentTest instance
+     * Write to it through ExtentManager.update, the background flush reads it concurrently
      * @return Current ExtentTest instance
      */
     public static ExtentTest getCurrentTest() {
@@ -194,6 +261,6 @@ public class TestListener implements ITestListener, IConfigurationListener {
      * @return ExtentReports instance
      */
     public static ExtentReports getExtentReports() {
-        return extent;
+        return ExtentManager.getInstance();
     }
-}
\ No newline at end of file
+}
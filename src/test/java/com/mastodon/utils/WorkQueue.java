@@ -0,0 +1,222 @@
+package com.mastodon.utils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Queue of test units shared by the worker JVMs of one run, kept as an
+ * append-only journal file that is only read or written under an exclusive
+ * file lock
+ * Journal lines are tab separated:
+ * ADD id test classes, CLAIM id pid, DONE id pid, ABANDON id
+ * where classes is "class#method,method;class#method". The queue state is
+ * rebuilt from the journal on every operation, so a claim made by a JVM
+ * that has since died is simply handed out again
+ */
+public class WorkQueue {
+
+    private final Path journal;
+    private final int maxAttempts;
+
+    /**
+     * @param journal     Journal file shared by the coordinator and the workers
+     * @param maxAttempts Claims by crashed workers after which a unit is abandoned
+     */
+    public WorkQueue(Path journal, int maxAttempts) {
+        this.journal = journal;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * A group of test methods that must run in the same JVM
+     */
+    public static class Unit {
+        public final String id;
+        public final String testName;
+        // Class name to included method names, in execution order
+        public final Map<String, List<String>> methods;
+
+        public Unit(String id, String testName, Map<String, List<String>> methods) {
+            this.id = id;
+            this.testName = testName;
+            this.methods = methods;
+        }
+
+        private String encodeMethods() {
+            List<String> classes = new ArrayList<>();
+            for (Map.Entry<String, List<String>> entry : methods.entrySet()) {
+                classes.add(entry.getKey() + "#" + String.join(",", entry.getValue()));
+            }
+            return String.join(";", classes);
+        }
+
+        private static Map<String, List<String>> decodeMethods(String value) {
+            Map<String, List<String>> methods = new LinkedHashMap<>();
+            for (String entry : value.split(";")) {
+                String[] parts = entry.split("#", 2);
+                methods.put(parts[0], new ArrayList<>(List.of(parts[1].split(","))));
+            }
+            return methods;
+        }
+
+        @Override
+        public String toString() {
+            return id + " " + methods;
+        }
+    }
+
+    private static class State {
+        final Map<String, Unit> units = new LinkedHashMap<>();
+        final Map<String, Long> owners = new LinkedHashMap<>();
+        final Map<String, Integer> attempts = new LinkedHashMap<>();
+        final List<String> finished = new ArrayList<>();
+    }
+
+    /**
+     * Starts a new run, replacing any journal left by a previous one
+     *
+     * @param units Units in the order they should be handed out
+     */
+    public void initialize(List<Unit> units) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (Unit unit : units) {
+            lines.append("ADD\t").append(unit.id).append('\t').append(unit.testName).append('\t')
+                    .append(unit.encodeMethods()).append('\n');
+        }
+        withLock(channel -> {
+            channel.truncate(0);
+            append(channel, lines.toString());
+            return null;
+        });
+    }
+
+    /**
+     * Claims the next unit nobody is working on, including units whose
+     * worker JVM died before finishing them
+     *
+     * @param pid Process id of the claiming worker
+     * @return The claimed unit, or null when there is nothing left to run
+     */
+    public Unit claim(long pid) throws IOException {
+        return withLock(channel -> {
+            State state = read(channel);
+            for (Unit unit : state.units.values()) {
+                if (state.finished.contains(unit.id)) {
+                    continue;
+                }
+                Long owner = state.owners.get(unit.id);
+                if (owner != null && isAlive(owner)) {
+                    continue;
+                }
+                if (owner != null) {
+                    System.out.println("Work queue: worker " + owner + " died while running " + unit.id
+                            + ", re-queued");
+                }
+                if (state.attempts.getOrDefault(unit.id, 0) >= maxAttempts) {
+                    System.out.println("Work queue: abandoned " + unit + " after " + maxAttempts
+                            + " crashed attempts");
+                    append(channel, "ABANDON\t" + unit.id + "\n");
+                    continue;
+                }
+                append(channel, "CLAIM\t" + unit.id + "\t" + pid + "\n");
+                return unit;
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Marks a claimed unit as finished, whatever the outcome of its tests
+     */
+    public void complete(Unit unit, long pid) throws IOException {
+        withLock(channel -> {
+            append(channel, "DONE\t" + unit.id + "\t" + pid + "\n");
+            return null;
+        });
+    }
+
+    /**
+     * Counts the units that are neither finished nor abandoned
+     */
+    public int remaining() throws IOException {
+        return withLock(channel -> {
+            State state = read(channel);
+            return state.units.size() - state.finished.size();
+        });
+    }
+
+    private State read(FileChannel channel) throws IOException {
+        State state = new State();
+        channel.position(0);
+        byte[] bytes = new byte[(int) channel.size()];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+            // Read the whole journal
+        }
+
+        for (String line : new String(bytes, StandardCharsets.UTF_8).split("\n")) {
+            String[] fields = line.split("\t");
+            switch (fields[0]) {
+                case "ADD":
+                    state.units.put(fields[1], new Unit(fields[1], fields[2], Unit.decodeMethods(fields[3])));
+                    break;
+                case "CLAIM":
+                    state.owners.put(fields[1], Long.parseLong(fields[2]));
+                    state.attempts.merge(fields[1], 1, Integer::sum);
+                    break;
+                case "DONE":
+                case "ABANDON":
+                    state.finished.add(fields[1]);
+                    break;
+                default:
+                    // Blank or partially written line
+            }
+        }
+        // The current claim of a unit only counts against it once its worker has died
+        state.owners.forEach((id, owner) -> {
+            if (isAlive(owner)) {
+                state.attempts.merge(id, -1, Integer::sum);
+            }
+        });
+        return state;
+    }
+
+    private void append(FileChannel channel, String text) throws IOException {
+        channel.position(channel.size());
+        channel.write(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+        channel.force(false);
+    }
+
+    private boolean isAlive(long pid) {
+        return ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false);
+    }
+
+    private interface JournalAction<T> {
+        T apply(FileChannel channel) throws IOException;
+    }
+
+    private synchronized <T> T withLock(JournalAction<T> action) throws IOException {
+        if (journal.getParent() != null) {
+            Files.createDirectories(journal.getParent());
+        }
+        try (RandomAccessFile file = new RandomAccessFile(journal.toFile(), "rw");
+             FileChannel channel = file.getChannel()) {
+            FileLock lock = channel.lock();
+            try {
+                return action.apply(channel);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+}
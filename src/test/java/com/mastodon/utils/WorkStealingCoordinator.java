@@ -0,0 +1,297 @@
+package com.mastodon.utils;
+
+import org.testng.IAlterSuiteListener;
+import org.testng.IAnnotationTransformer;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ITestNGMethod;
+import org.testng.TestNG;
+import org.testng.reporters.XMLReporter;
+import org.testng.xml.XmlClass;
+import org.testng.xml.XmlInclude;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+import org.testng.xml.internal.Parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Runs a suite on several local JVMs that pull work from a shared queue
+ * instead of receiving a fixed share up front, so a worker that drew slow
+ * tests simply takes fewer of them
+ * The coordinator (the JVM started by the user) resolves the suite the way
+ * TestNG would, splits it into units and writes them to a WorkQueue journal,
+ * longest first from the duration history. It then forks the worker JVMs,
+ * each of which claims one unit at a time and runs it with TestNG. Methods
+ * of a class with dependencies, and classes linked by dependencies, form a
+ * single unit; every other method is a unit of its own. Work claimed by a
+ * worker that crashes is picked up by the next free worker, and the
+ * coordinator starts replacement workers while work is left
+ * Usage: java -cp ... com.mastodon.utils.WorkStealingCoordinator testng.xml [workers]
+ */
+public class WorkStealingCoordinator {
+
+    private static final String WORKER_FLAG = "--worker";
+    private static final Path JOURNAL = Paths.get(Shard.SHARDS_DIR, "work-queue.journal");
+    private static final int MAX_ATTEMPTS = Integer.parseInt(
+            ConfigUtils.getProperty("workers.maxAttempts", "2"));
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: WorkStealingCoordinator <suite.xml> [workers]");
+            System.exit(2);
+        }
+        if (args[0].equals(WORKER_FLAG)) {
+            runWorker(args[1]);
+            return;
+        }
+
+        int workers = args.length > 1 ? Integer.parseInt(args[1])
+                : Integer.parseInt(ConfigUtils.getProperty("workers.count", "2"));
+        clearPreviousRun();
+        WorkQueue queue = new WorkQueue(JOURNAL, MAX_ATTEMPTS);
+        List<WorkQueue.Unit> units = plan(args[0]);
+        queue.initialize(units);
+        System.out.println("Work-stealing run: " + units.size() + " units for " + workers + " workers");
+
+        List<Process> processes = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            processes.add(startWorker(args[0], i + 1, workers));
+        }
+        int next = workers + 1;
+        boolean failed = false;
+        while (!processes.isEmpty()) {
+            Process process = processes.remove(0);
+            failed |= process.waitFor() != 0;
+            // Live workers steal the units of a crashed one; once none is left, start a replacement
+            if (processes.isEmpty() && queue.remaining() > 0) {
+                System.out.println("Work-stealing run: " + queue.remaining()
+                        + " units left by crashed workers, starting a replacement worker");
+                processes.add(startWorker(args[0], next++, workers));
+            }
+        }
+
+        ShardReportMerger.main(new String[]{Shard.SHARDS_DIR});
+        System.exit(failed ? 1 : 0);
+    }
+
+    private static void clearPreviousRun() {
+        File[] previous = new File(Shard.SHARDS_DIR).listFiles(File::isDirectory);
+        if (previous == null) {
+            return;
+        }
+        for (File dir : previous) {
+            try (Stream<Path> files = Files.walk(dir.toPath())) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            } catch (IOException e) {
+                System.err.println("Failed to remove " + dir + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Resolves the methods each &lt;test&gt; would run and groups them into units
+     */
+    private static List<WorkQueue.Unit> plan(String suiteFile) throws Exception {
+        List<XmlSuite> suites = new ArrayList<>(new Parser(suiteFile).parseToList());
+        for (XmlSuite suite : suites) {
+            // Only listeners that change which methods are selected matter for planning
+            List<String> listeners = new ArrayList<>();
+            for (String listener : suite.getListeners()) {
+                Class<?> type = Class.forName(listener);
+                if (IAlterSuiteListener.class.isAssignableFrom(type)
+                        || IAnnotationTransformer.class.isAssignableFrom(type)) {
+                    listeners.add(listener);
+                }
+            }
+            suite.setListeners(listeners);
+        }
+
+        Map<String, List<ITestNGMethod>> selected = Collections.synchronizedMap(new LinkedHashMap<>());
+        TestNG planner = new TestNG(false);
+        planner.setXmlSuites(suites);
+        planner.setOutputDirectory("test-output/work-planning");
+        planner.addListener((IMethodInterceptor) (methods, context) -> {
+            List<ITestNGMethod> testMethods = new ArrayList<>();
+            for (IMethodInstance method : methods) {
+                testMethods.add(method.getMethod());
+            }
+            selected.put(context.getName(), testMethods);
+            return new ArrayList<>();
+        });
+        planner.run();
+
+        Map<String, Long> history = TestDurationHistory.load();
+        List<WorkQueue.Unit> units = new ArrayList<>();
+        Map<String, Long> estimates = new HashMap<>();
+        for (Map.Entry<String, List<ITestNGMethod>> entry : selected.entrySet()) {
+            for (List<ITestNGMethod> group : dependencyUnits(entry.getValue())) {
+                Map<String, List<String>> methods = new LinkedHashMap<>();
+                long estimate = 0;
+                for (ITestNGMethod method : group) {
+                    methods.computeIfAbsent(method.getRealClass().getName(), name -> new ArrayList<>())
+                            .add(method.getMethodName());
+                    estimate += history.getOrDefault(method.getQualifiedName(), 0L);
+                }
+                String id = String.format("unit-%04d", units.size() + 1);
+                units.add(new WorkQueue.Unit(id, entry.getKey(), methods));
+                estimates.put(id, estimate);
+            }
+        }
+
+        // Longest units first so the last ones handed out are short; unknown units go first
+        units.sort((a, b) -> {
+            long ea = estimates.get(a.id);
+            long eb = estimates.get(b.id);
+            if ((ea == 0) != (eb == 0)) {
+                return ea == 0 ? -1 : 1;
+            }
+            return Long.compare(eb, ea);
+        });
+        return units;
+    }
+
+    private static List<List<ITestNGMethod>> dependencyUnits(List<ITestNGMethod> methods) {
+        int[] parents = new int[methods.size()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+
+        Map<Class<?>, Integer> firstOfClass = new HashMap<>();
+        List<Class<?>> classesWithDependencies = new ArrayList<>();
+        for (int i = 0; i < methods.size(); i++) {
+            ITestNGMethod method = methods.get(i);
+            firstOfClass.putIfAbsent(method.getRealClass(), i);
+            List<String> dependsOnMethods = Arrays.asList(method.getMethodsDependedUpon());
+            List<String> dependsOnGroups = Arrays.asList(method.getGroupsDependedUpon());
+            if (dependsOnMethods.isEmpty() && dependsOnGroups.isEmpty()) {
+                continue;
+            }
+            classesWithDependencies.add(method.getRealClass());
+            for (int j = 0; j < methods.size(); j++) {
+                ITestNGMethod candidate = methods.get(j);
+                if (dependsOnMethods.contains(candidate.getQualifiedName())
+                        || Arrays.stream(candidate.getGroups()).anyMatch(dependsOnGroups::contains)) {
+                    union(parents, i, j);
+                }
+            }
+        }
+        // A class with dependencies keeps all its methods together in one JVM
+        for (int i = 0; i < methods.size(); i++) {
+            if (classesWithDependencies.contains(methods.get(i).getRealClass())) {
+                union(parents, i, firstOfClass.get(methods.get(i).getRealClass()));
+            }
+        }
+
+        Map<Integer, List<ITestNGMethod>> units = new LinkedHashMap<>();
+        for (int i = 0; i < methods.size(); i++) {
+            units.computeIfAbsent(find(parents, i), root -> new ArrayList<>()).add(methods.get(i));
+        }
+        return new ArrayList<>(units.values());
+    }
+
+    private static void union(int[] parents, int a, int b) {
+        parents[find(parents, a)] = find(parents, b);
+    }
+
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private static Process startWorker(String suiteFile, int number, int workers) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        // Forward -D options and JVM settings given to the coordinator
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-D" + Shard.REPORT_DIR_PROPERTY + "=" + Shard.SHARDS_DIR + "/worker-" + number);
+        // Workers tag their content with the coordinator's run id and their own process id
+        command.add("-D" + UniqueContentGenerator.RUN_ID_PROPERTY + "=" + UniqueContentGenerator.getRunId());
+        // Each worker's governor only fills its share of the cores, not the whole machine
+        int cores = Integer.getInteger(ResourceGovernor.CORES_PROPERTY, Runtime.getRuntime().availableProcessors());
+        command.add("-D" + ResourceGovernor.CORES_PROPERTY + "=" + Math.max(1, cores / workers));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(WorkStealingCoordinator.class.getName());
+        command.add(WORKER_FLAG);
+        command.add(suiteFile);
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    /**
+     * Claims and runs units until the queue is empty
+     */
+    private static void runWorker(String suiteFile) throws Exception {
+        WorkQueue queue = new WorkQueue(JOURNAL, MAX_ATTEMPTS);
+        long pid = ProcessHandle.current().pid();
+        int ran = 0;
+        boolean failed = false;
+        WorkQueue.Unit unit;
+        while ((unit = queue.claim(pid)) != null) {
+            System.out.println("Worker " + pid + " running " + unit);
+            TestNG testng = new TestNG(false);
+            testng.setXmlSuites(unitSuites(suiteFile, unit));
+            testng.setOutputDirectory(new File(Shard.SHARDS_DIR, unit.id).getPath());
+            testng.addListener(new XMLReporter());
+            testng.run();
+            failed |= testng.hasFailure();
+            queue.complete(unit, pid);
+            ran++;
+        }
+        System.out.println("Worker " + pid + " finished after " + ran + " units");
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * Copies of the suite containing only the unit's methods, inside the
+     * &lt;test&gt; they were selected by so its parameters still apply
+     */
+    private static List<XmlSuite> unitSuites(String suiteFile, WorkQueue.Unit unit) throws Exception {
+        List<XmlSuite> copies = new ArrayList<>();
+        for (XmlSuite suite : new Parser(suiteFile).parseToList()) {
+            for (XmlTest test : suite.getTests()) {
+                if (!test.getName().equals(unit.testName)) {
+                    continue;
+                }
+                XmlSuite copy = suite.shallowCopy();
+                XmlTest unitTest = new XmlTest(copy);
+                unitTest.setName(test.getName());
+                unitTest.setParameters(test.getLocalParameters());
+                unitTest.setPreserveOrder(true);
+                List<XmlClass> xmlClasses = new ArrayList<>();
+                for (Map.Entry<String, List<String>> entry : unit.methods.entrySet()) {
+                    XmlClass xmlClass = new XmlClass(entry.getKey(), xmlClasses.size(), true);
+                    List<XmlInclude> includes = new ArrayList<>();
+                    for (String method : entry.getValue()) {
+                        XmlInclude include = new XmlInclude(method, includes.size());
+                        include.setXmlClass(xmlClass);
+                        includes.add(include);
+                    }
+                    xmlClass.setIncludedMethods(includes);
+                    xmlClasses.add(xmlClass);
+                }
+                unitTest.setXmlClasses(xmlClasses);
+                copies.add(copy);
+                return copies;
+            }
+        }
+        throw new IllegalStateException("No <test> named '" + unit.testName + "' in " + suiteFile);
+    }
+}
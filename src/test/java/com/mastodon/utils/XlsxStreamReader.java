@@ -0,0 +1,366 @@
+package com.mastodon.utils;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.SAXException;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Streaming reader for one sheet of an XLSX file
+ * The sheet XML is pulled row by row through POI's XSSFReader instead of
+ * being loaded into an XSSFWorkbook, so memory use does not depend on the
+ * number of rows. Shared strings are resolved through a read-only table and
+ * cell styles are only consulted to tell dates from numbers. Cell values are
+ * converted to the strings ExcelDataReader has always returned for XSSFCell
+ * values: whole numbers without a fraction, dates as Date.toString() and
+ * numeric formula results as doubles
+ */
+public class XlsxStreamReader implements Closeable {
+
+    private final OPCPackage pkg;
+    private final XMLStreamReader xml;
+    private final InputStream sheetData;
+    private final ReadOnlySharedStringsTable sharedStrings;
+    private final StylesTable styles;
+    private final boolean date1904;
+    private final Map<Integer, Boolean> dateStyles = new HashMap<>();
+    private final List<String> cells = new ArrayList<>();
+    private final StringBuilder text = new StringBuilder();
+    private String[] pendingRow;
+    private int pendingRowIndex;
+    private int nextRowIndex;
+
+    /**
+     * Opens a sheet for reading
+     *
+     * @param filePath  Path to the XLSX file
+     * @param sheetName Name of the sheet
+     * @throws IOException if the file cannot be read or has no such sheet
+     */
+    public XlsxStreamReader(String filePath, String sheetName) throws IOException {
+        pkg = openPackage(filePath);
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            styles = reader.getStylesTable();
+            date1904 = isDate1904(reader);
+            sheetData = findSheet(reader, sheetName);
+            if (sheetData == null) {
+                throw new IOException("Sheet not found: " + sheetName);
+            }
+            xml = XMLHelper.newXMLInputFactory().createXMLStreamReader(sheetData);
+        } catch (IOException e) {
+            pkg.revert();
+            throw e;
+        } catch (OpenXML4JException | SAXException | XMLStreamException e) {
+            pkg.revert();
+            throw new IOException("Error opening sheet " + sheetName + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gets the sheet names in workbook order without reading any sheet
+     *
+     * @param filePath Path to the XLSX file
+     * @return List of sheet names
+     * @throws IOException if the file cannot be read
+     */
+    public static List<String> getSheetNames(String filePath) throws IOException {
+        OPCPackage pkg = openPackage(filePath);
+        try {
+            List<String> sheetNames = new ArrayList<>();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) new XSSFReader(pkg).getSheetsData();
+            while (sheets.hasNext()) {
+                sheets.next().close();
+                sheetNames.add(sheets.getSheetName());
+            }
+            return sheetNames;
+        } catch (OpenXML4JException e) {
+            throw new IOException("Error reading sheet names: " + e.getMessage(), e);
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    /**
+     * Reads the next row; rows missing from the sheet are returned as empty rows,
+     * so the n-th call returns row n - 1 of the sheet
+     *
+     * @return Cell values up to the last cell of the row, null for cells not
+     *         present in the sheet; null at the end of the sheet
+     */
+    public String[] next() throws IOException {
+        if (pendingRow == null && !readRow()) {
+            return null;
+        }
+        if (nextRowIndex < pendingRowIndex) {
+            nextRowIndex++;
+            return new String[0];
+        }
+        String[] row = pendingRow;
+        pendingRow = null;
+        nextRowIndex++;
+        return row;
+    }
+
+    /**
+     * Iterates over the remaining rows; I/O errors are thrown as UncheckedIOException
+     *
+     * @return Iterator over the rows
+     */
+    public Iterator<String[]> iterator() {
+        return new Iterator<String[]>() {
+            private String[] next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = XlsxStreamReader.this.next();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public String[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String[] row = next;
+                next = null;
+                return row;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            sheetData.close();
+            pkg.revert();
+        }
+    }
+
+    private static OPCPackage openPackage(String filePath) throws IOException {
+        if (!new File(filePath).isFile()) {
+            throw new FileNotFoundException(filePath + " (No such file)");
+        }
+        try {
+            return OPCPackage.open(filePath, PackageAccess.READ);
+        } catch (InvalidFormatException e) {
+            throw new IOException("Not a valid XLSX file: " + filePath, e);
+        }
+    }
+
+    private static InputStream findSheet(XSSFReader reader, String sheetName)
+            throws IOException, InvalidFormatException {
+        XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+        while (sheets.hasNext()) {
+            InputStream sheet = sheets.next();
+            if (sheets.getSheetName().equals(sheetName)) {
+                return sheet;
+            }
+            sheet.close();
+        }
+        return null;
+    }
+
+    /**
+     * Reads the date system of the workbook, as dates are stored as day counts
+     */
+    private static boolean isDate1904(XSSFReader reader)
+            throws IOException, InvalidFormatException, XMLStreamException {
+        try (InputStream workbook = reader.getWorkbookData()) {
+            XMLStreamReader xml = XMLHelper.newXMLInputFactory().createXMLStreamReader(workbook);
+            try {
+                while (xml.hasNext()) {
+                    if (xml.next() == XMLStreamConstants.START_ELEMENT) {
+                        String name = xml.getLocalName();
+                        if (name.equals("workbookPr")) {
+                            String value = xml.getAttributeValue(null, "date1904");
+                            return "1".equals(value) || "true".equals(value);
+                        }
+                        if (name.equals("sheets")) {
+                            return false;
+                        }
+                    }
+                }
+                return false;
+            } finally {
+                xml.close();
+            }
+        }
+    }
+
+    /**
+     * Advances to the next row element and parses its cells into pendingRow
+     *
+     * @return false at the end of the sheet
+     */
+    private boolean readRow() throws IOException {
+        try {
+            while (xml.hasNext()) {
+                if (xml.next() != XMLStreamConstants.START_ELEMENT || !xml.getLocalName().equals("row")) {
+                    continue;
+                }
+                String reference = xml.getAttributeValue(null, "r");
+                pendingRowIndex = reference != null ? Integer.parseInt(reference) - 1 : nextRowIndex;
+
+                cells.clear();
+                while (xml.next() != XMLStreamConstants.END_ELEMENT || !xml.getLocalName().equals("row")) {
+                    if (xml.getEventType() == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("c")) {
+                        readCell();
+                    }
+                }
+                pendingRow = cells.toArray(new String[0]);
+                return true;
+            }
+            return false;
+        } catch (XMLStreamException e) {
+            throw new IOException("Error reading sheet row " + (nextRowIndex + 1) + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void readCell() throws XMLStreamException {
+        String reference = xml.getAttributeValue(null, "r");
+        String type = xml.getAttributeValue(null, "t");
+        String style = xml.getAttributeValue(null, "s");
+        int column = reference != null ? columnIndex(reference) : cells.size();
+
+        String value = null;
+        boolean formula = false;
+        text.setLength(0);
+        while (xml.next() != XMLStreamConstants.END_ELEMENT || !xml.getLocalName().equals("c")) {
+            if (xml.getEventType() != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            switch (xml.getLocalName()) {
+                case "v":
+                    value = xml.getElementText();
+                    break;
+                case "f":
+                    formula = true;
+                    break;
+                case "rPh":
+                    skipElement(); // Phonetic runs are not part of the text
+                    break;
+                case "t":
+                    text.append(xml.getElementText()); // Inline string, plain or rich text
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        while (cells.size() <= column) {
+            cells.add(null);
+        }
+        cells.set(column, toString(type, style, value, formula));
+    }
+
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Converts a cell to the string its XSSFCell value would give in ExcelDataReader
+     */
+    private String toString(String type, String style, String value, boolean formula) {
+        if (type == null) {
+            type = "n";
+        }
+        switch (type) {
+            case "s":
+                return sharedStrings.getItemAt(Integer.parseInt(value.trim())).getString();
+            case "inlineStr":
+                return text.toString();
+            case "str":
+                return value != null ? value : "";
+            case "b":
+                return String.valueOf("1".equals(value));
+            case "n":
+                if (value == null || value.isEmpty()) {
+                    return "";
+                }
+                double numericValue = Double.parseDouble(value);
+                if (formula) {
+                    return String.valueOf(numericValue);
+                }
+                if (isDateStyle(style) && DateUtil.isValidExcelDate(numericValue)) {
+                    return DateUtil.getJavaDate(numericValue, date1904).toString();
+                }
+                // Handle both integer and decimal numbers
+                if (numericValue == Math.floor(numericValue)) {
+                    return String.valueOf((long) numericValue);
+                }
+                return String.valueOf(numericValue);
+            default:
+                return "";
+        }
+    }
+
+    private boolean isDateStyle(String style) {
+        if (styles == null) {
+            return false;
+        }
+        int styleIndex = style != null ? Integer.parseInt(style) : 0;
+        return dateStyles.computeIfAbsent(styleIndex, index -> {
+            XSSFCellStyle cellStyle = styles.getStyleAt(index);
+            return cellStyle != null
+                    && DateUtil.isADateFormat(cellStyle.getDataFormat(), cellStyle.getDataFormatString());
+        });
+    }
+
+    /**
+     * Converts the letters of a cell reference such as "AB12" to a 0-based column index
+     */
+    private static int columnIndex(String reference) {
+        int column = 0;
+        for (int i = 0; i < reference.length(); i++) {
+            char c = reference.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+}